@@ -0,0 +1,45 @@
+package com.antivirus.server.security;
+
+import com.antivirus.server.models.User;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Разбор и проверка JWT — выполняется фильтром на каждом запросе */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    JwtService jwt;
+    String accessToken;
+    String refreshToken;
+
+    @Setup
+    public void setup() {
+        jwt = new JwtService("some-very-secret-key-that-is-long-enough", 3_600_000L, 2_592_000_000L);
+        User user = new User();
+        user.setUsername("bench-user");
+        accessToken = jwt.generateAccessToken(user);
+        refreshToken = jwt.generateRefreshToken(user, "device-1");
+    }
+
+    @Benchmark
+    public Claims parse() {
+        return jwt.parse(accessToken);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwt.extractUsername(accessToken);
+    }
+
+    @Benchmark
+    public boolean isRefreshToken() {
+        return jwt.isRefreshToken(refreshToken);
+    }
+}
@@ -0,0 +1,72 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/** Синтетические данные и окружение для бенчмарков (без Spring и БД) */
+final class BenchData {
+
+    private BenchData() {}
+
+    /** n записей со стабильным seed: 8-байтовый префикс, сигнатура 16..128 байт, окно смещений */
+    static List<Signature> signatures(int n) {
+        Random rnd = new Random(n);
+        HexFormat hex = HexFormat.of();
+        List<Signature> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            byte[] body = new byte[16 + rnd.nextInt(113)];
+            rnd.nextBytes(body);
+            Signature s = new Signature();
+            s.setId(new UUID(rnd.nextLong(), rnd.nextLong()));
+            s.setName("Bench.Sig." + i);
+            s.setObjectType(i % 4 == 0 ? Signature.ObjectType.JAVA : Signature.ObjectType.PE);
+            s.setObjectSignaturePrefix(hex.formatHex(body, 0, 8));
+            s.setObjectSignature(hex.formatHex(body));
+            s.setObjectSignatureLength(body.length);
+            s.setOffsetBegin((long) rnd.nextInt(4096));
+            s.setOffsetEnd(s.getOffsetBegin() + 65536);
+            s.setVersion(1L);
+            out.add(s);
+        }
+        return out;
+    }
+
+    /** Подпись RSA-ключом из временного PKCS12, созданного keytool из текущего JDK */
+    static ManifestSigningService signing() throws Exception {
+        return signing(ManifestSigningService.DEFAULT_ALGORITHM);
+    }
+
+    /** То же для заданного алгоритма: тип ключа подбирается под него */
+    static ManifestSigningService signing(String algorithm) throws Exception {
+        List<String> keyalg = switch (algorithm) {
+            case "Ed25519" -> List.of("-keyalg", "Ed25519");
+            case "SHA256withECDSA" -> List.of("-keyalg", "EC", "-groupname", "secp256r1");
+            default -> List.of("-keyalg", "RSA", "-keysize", "2048");
+        };
+        Path dir = Files.createTempDirectory("av-bench");
+        Path ks = dir.resolve("bench.p12");
+        String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+        List<String> cmd = new ArrayList<>(List.of(keytool, "-genkeypair", "-alias", "bench"));
+        cmd.addAll(keyalg);
+        cmd.addAll(List.of("-dname", "CN=bench", "-validity", "1", "-storetype", "PKCS12", "-keystore", ks.toString(),
+                "-storepass", "benchpass", "-keypass", "benchpass"));
+        Process p = new ProcessBuilder(cmd).inheritIO().start();
+        if (p.waitFor() != 0) throw new IllegalStateException("keytool failed");
+        ks.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+        return new ManifestSigningService("AVBASES-BENCH", ks.toString(), "benchpass", "PKCS12", "bench", algorithm,
+                5000);
+    }
+
+    /** Для ReleaseSnapshotService.build нужен только guidWithSignatureBase64 — зависимости не используются */
+    static SignatureService signatureService() {
+        return new SignatureService(null, null, null, null, null, null, null, 100, 1000);
+    }
+}
@@ -0,0 +1,74 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная сборка того, что отдаёт GET /api/signatures/bundle: manifest.txt, data.bin, JSON-манифест,
+ * хэш содержимого и multipart. Подписи берутся готовые (как при загрузке релиза) либо считаются заново.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BundleBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    ReleaseSnapshotService snapshots;
+    List<Signature> items;
+    OffsetDateTime date;
+    String headerSig;
+    String manifestSig;
+    String chunkSig;
+    byte[] manifestBytes;
+    byte[] dataBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        ManifestSigningService signing = BenchData.signing();
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        snapshots = new ReleaseSnapshotService(BenchData.signatureService(), signing, mapper, false, 8, false);
+        items = BenchData.signatures(size);
+        byte[] fakeSig = new byte[256];
+        for (Signature s : items) s.setAvRecordSignature(fakeSig);
+        date = OffsetDateTime.now();
+        ReleaseSnapshot signed = snapshots.build(1L, date, items, null);
+        headerSig = signed.getHeader().headerSignature;
+        manifestSig = signed.getManifestSignature();
+        chunkSig = signed.getChunkIndexSignature();
+        StringBuilder sb = new StringBuilder().append(size).append("\n");
+        BenchData.signatureService().guidWithSignatureBase64(items).forEach(l -> sb.append(l).append("\n"));
+        manifestBytes = sb.append("MANIFEST_SIG:").append(manifestSig).append("\n").toString()
+                .getBytes(StandardCharsets.UTF_8);
+        dataBytes = SignatureBytes.buildDataBin(items);
+    }
+
+    @Benchmark
+    public byte[] assembleStoredSignatures() {
+        return snapshots.build(1L, date, items, new ReleaseSnapshotService.Stored(headerSig, manifestSig,
+                ManifestSigningService.DEFAULT_ALGORITHM, null, chunkSig)).getBundle();
+    }
+
+    @Benchmark
+    public byte[] assembleAndSign() {
+        return snapshots.build(1L, date, items, null).getBundle();
+    }
+
+    @Benchmark
+    public byte[] multipartOnly() {
+        return MultipartBundle.assemble("----AVBOUND-bench", manifestBytes, dataBytes);
+    }
+}
@@ -0,0 +1,28 @@
+package com.antivirus.server.services;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** SHA-256 refresh-токена — выполняется на каждом /auth/refresh */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RefreshTokenHashBenchmark {
+
+    String token;
+
+    @Setup
+    public void setup() {
+        // типичная длина refresh JWT с deviceId
+        token = "eyJhbGciOiJIUzI1NiJ9." + "x".repeat(220) + "." + "y".repeat(43);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return RefreshTokenService.sha256(token);
+    }
+}
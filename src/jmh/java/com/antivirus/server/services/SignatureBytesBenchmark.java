@@ -0,0 +1,40 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Кодирование записей data.bin: одна запись и весь набор */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureBytesBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    List<Signature> items;
+    int next;
+
+    @Setup
+    public void setup() {
+        items = BenchData.signatures(size);
+    }
+
+    @Benchmark
+    public byte[] buildRecordBytes() {
+        Signature s = items.get(next);
+        next = next + 1 == size ? 0 : next + 1;
+        return SignatureBytes.buildRecordBytes(s);
+    }
+
+    @Benchmark
+    public byte[] buildDataBin() {
+        return SignatureBytes.buildDataBin(items);
+    }
+}
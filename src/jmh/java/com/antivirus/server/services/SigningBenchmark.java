@@ -0,0 +1,61 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.dto.ManifestHeaderDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/** Подпись текста манифеста заданного числа строк, заголовка и одной записи — по алгоритмам */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SigningBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"SHA256withRSA", "Ed25519", "SHA256withECDSA"})
+    String algorithm;
+
+    ManifestSigningService signing;
+    String manifestText;
+    byte[] record;
+    byte[] recordSig;
+    OffsetDateTime date;
+
+    @Setup
+    public void setup() throws Exception {
+        signing = BenchData.signing(algorithm);
+        StringBuilder sb = new StringBuilder().append(size).append("\n");
+        BenchData.signatureService().guidWithSignatureBase64(BenchData.signatures(size))
+                .forEach(l -> sb.append(l).append("\n"));
+        manifestText = sb.toString();
+        date = OffsetDateTime.now();
+        record = RecordEncoder.encode(BenchData.signatures(1).get(0));
+        recordSig = signing.sign(record);
+    }
+
+    @Benchmark
+    public String signString() {
+        return signing.signString(manifestText);
+    }
+
+    @Benchmark
+    public byte[] signRecord() {
+        return signing.sign(record);
+    }
+
+    @Benchmark
+    public boolean verifyRecord() {
+        return signing.verify(record, recordSig);
+    }
+
+    @Benchmark
+    public ManifestHeaderDto buildSignedHeader() {
+        return signing.buildSignedHeader(1L, date, size);
+    }
+}
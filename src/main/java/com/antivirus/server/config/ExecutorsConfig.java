@@ -0,0 +1,51 @@
+package com.antivirus.server.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorsConfig {
+
+    /** Сборка релизов: строго по одной, чтобы не конкурировать за БД и ключ */
+    @Bean
+    public ThreadPoolTaskExecutor releaseExecutor() {
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(1);
+        ex.setMaxPoolSize(1);
+        ex.setQueueCapacity(16);
+        ex.setThreadNamePrefix("release-");
+        ex.setWaitForTasksToCompleteOnShutdown(true);
+        return ex;
+    }
+
+    /** Фоновые задачи (переподпись и т.п.): координаторы, сама работа уходит в cryptoExecutor */
+    @Bean
+    public ThreadPoolTaskExecutor jobExecutor() {
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(2);
+        ex.setMaxPoolSize(2);
+        ex.setQueueCapacity(16);
+        ex.setThreadNamePrefix("job-");
+        ex.setWaitForTasksToCompleteOnShutdown(true);
+        return ex;
+    }
+
+    /**
+     * Подпись/проверка ЭЦП: по потоку на ядро, очередь ограничена,
+     * при переполнении работу выполняет сам отправитель (естественный backpressure).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cryptoExecutor() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(cores);
+        ex.setMaxPoolSize(cores);
+        ex.setQueueCapacity(cores * 4);
+        ex.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        ex.setThreadNamePrefix("crypto-");
+        return ex;
+    }
+}
@@ -1,19 +1,77 @@
 package com.antivirus.server.controllers;
 
-import com.antivirus.server.services.SignatureService;
+import com.antivirus.server.models.ResignJob;
+import com.antivirus.server.services.DirectoryScanService;
+import com.antivirus.server.services.ResignJobService;
+import com.antivirus.server.services.SignatureImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 @RestController
 @RequestMapping("/admin")
 public class AdminController {
-    private final SignatureService signatureService;
-    public AdminController(SignatureService signatureService) { this.signatureService = signatureService; }
+    private final ResignJobService resignJobs;
+    private final SignatureImportService importService;
+    private final DirectoryScanService directoryScan;
+    public AdminController(ResignJobService resignJobs,
+                           SignatureImportService importService,
+                           DirectoryScanService directoryScan) {
+        this.resignJobs = resignJobs;
+        this.importService = importService;
+        this.directoryScan = directoryScan;
+    }
+
+    /** Проверка каталога на сервере (внутри av.scan.allowed-roots); ответ — NDJSON, строка на файл */
+    @PostMapping("/scan/directory")
+    public void scanDirectory(@RequestParam String path,
+                              @RequestParam(defaultValue = "false") boolean firstMatch,
+                              HttpServletResponse response) throws IOException {
+        Path root;
+        try {
+            root = directoryScan.resolve(path);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+        response.setContentType("application/x-ndjson");
+        directoryScan.scan(root, response.getOutputStream(), firstMatch);
+    }
+
+    /** Массовый импорт: тело — JSON-массив сигнатур, читается потоком; ответ — счётчики и ошибки по записям */
+    @PostMapping(value = "/signatures/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importSignatures(HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(importService.importJson(request.getInputStream()));
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 
 
+    /** Запускает фоновую переподпись; прогресс — GET /admin/signatures/resign/{id} */
     @PostMapping("/signatures/resign")
-    public ResponseEntity<String> resignAll() {
-        int n = signatureService.resignAll();
-        return ResponseEntity.ok("Resigned signatures: " + n);
+    public ResponseEntity<ResignJob> resignAll(@RequestHeader(value = "X-User", required = false) String who) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(resignJobs.start(who == null ? "api" : who));
+    }
+
+    @GetMapping("/signatures/resign")
+    public ResponseEntity<ResignJob> lastResignJob() {
+        return resignJobs.latest()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/signatures/resign/{id}")
+    public ResponseEntity<ResignJob> resignJob(@PathVariable long id) {
+        return resignJobs.get(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 }
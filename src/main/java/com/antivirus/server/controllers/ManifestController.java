@@ -1,44 +1,74 @@
 package com.antivirus.server.controllers;
 
-import com.antivirus.server.dto.ManifestDto;
-import com.antivirus.server.dto.ManifestHeaderDto;
+import com.antivirus.server.dto.MerkleProofDto;
 import com.antivirus.server.models.Signature;
+import com.antivirus.server.services.BundleStreamer;
+import com.antivirus.server.services.ChunkIndex;
+import com.antivirus.server.services.DeltaBundle;
+import com.antivirus.server.services.DeltaService;
 import com.antivirus.server.services.ManifestSigningService;
-import com.antivirus.server.services.SignatureBytes;
-import com.antivirus.server.services.SignatureService;
+import com.antivirus.server.services.MerkleTree;
+import com.antivirus.server.services.MultipartBundle;
+import com.antivirus.server.services.ReleaseSnapshot;
+import com.antivirus.server.services.ReleaseSnapshotService;
 import com.antivirus.server.util.PemUtil;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.security.cert.X509Certificate;
-import java.time.OffsetDateTime;
-import java.util.List;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @RestController
 public class ManifestController {
 
-    private final SignatureService service;
-    private final ManifestSigningService signing;
+    /** Номер релиза, который клиент передаёт в /api/signatures/delta?since= */
+    static final String RELEASE_HEADER = "X-AV-Release";
+    /** Версия data.bin: запрос — какую хочет клиент (или ?format=), ответ — какая отдана */
+    static final String FORMAT_HEADER = "X-AV-Format";
 
-    public ManifestController(SignatureService service, ManifestSigningService signing) {
-        this.service = service;
+    private final ReleaseSnapshotService snapshots;
+    private final ManifestSigningService signing;
+    private final BundleStreamer streamer;
+    private final DeltaService deltas;
+
+    public ManifestController(ReleaseSnapshotService snapshots,
+                              ManifestSigningService signing,
+                              BundleStreamer streamer,
+                              DeltaService deltas) {
+        this.snapshots = snapshots;
         this.signing = signing;
+        this.streamer = streamer;
+        this.deltas = deltas;
     }
 
 
-    @GetMapping("/manifest")
-    public ManifestDto getManifest() {
-        List<Signature> records = service.getAllSignatures();
-        OffsetDateTime date = service.getReleaseDate();
-        ManifestHeaderDto header = signing.buildSignedHeader(date, records.size());
-        return new ManifestDto(header, records);
+    /** type — только записи этого типа: свой count и своя подпись заголовка */
+    @GetMapping(value = "/manifest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getManifest(@RequestParam(required = false) Signature.ObjectType type,
+                                              WebRequest request) {
+        ReleaseSnapshot snapshot = published(type);
+        // клиент уже на этом релизе — 304 без тела
+        if (request.checkNotModified(snapshot.getManifestEtag())) return null;
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.getManifestEtag())
+                .header(RELEASE_HEADER, String.valueOf(snapshot.getNumber()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getManifestJson());
     }
 
 
@@ -49,54 +79,149 @@ public class ManifestController {
     }
 
 
+    /** data.bin v1 (по умолчанию) или v2 — по ?format= либо заголовку X-AV-Format; type — раздел по типу записей */
     @GetMapping(value = "/api/signatures/bundle", produces = "multipart/mixed")
-    @Transactional(readOnly = true)
-    public ResponseEntity<byte[]> bundle() {
-        List<Signature> items = service.getAllSignatures();
-        int count = items.size();
+    public ResponseEntity<byte[]> bundle(@RequestParam(required = false) Integer format,
+                                         @RequestHeader(value = FORMAT_HEADER, required = false) Integer formatHeader,
+                                         @RequestParam(required = false) Signature.ObjectType type,
+                                         WebRequest request) {
+        ReleaseSnapshot snapshot = published(type);
+        boolean v2 = format(format, formatHeader) == 2;
+        String etag = v2 ? snapshot.getBundleV2Etag() : snapshot.getBundleEtag();
+        if (request.checkNotModified(etag)) return null;
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .varyBy(FORMAT_HEADER)
+                .header(RELEASE_HEADER, String.valueOf(snapshot.getNumber()))
+                .header(FORMAT_HEADER, v2 ? "2" : "1")
+                .header(HttpHeaders.CONTENT_TYPE, MultipartBundle.contentType(snapshot.getBoundary()))
+                .body(v2 ? snapshot.getBundleV2() : snapshot.getBundle());
+    }
 
-        // --- manifest.txt ---
-        List<String> lines = service.guidWithSignatureBase64(items);
-        StringBuilder manifestTxt = new StringBuilder();
-        manifestTxt.append(count).append("\n");              // 2.1 count
-        lines.forEach(l -> manifestTxt.append(l).append("\n")); // 2.2 GUID:signature
+    /** Потоковый режим: бандл опубликованного релиза пишется прямо из курсора БД, без копий в heap (только v1) */
+    @GetMapping(value = "/api/signatures/bundle", params = "stream=true", produces = "multipart/mixed")
+    public void bundleStream(@RequestParam(required = false) Signature.ObjectType type,
+                             HttpServletResponse response) throws IOException {
+        ReleaseSnapshot snapshot = published(type);
+        String boundary = "----AVBOUND-" + UUID.randomUUID();
+        response.setContentType(MultipartBundle.contentType(boundary));
+        response.setHeader(RELEASE_HEADER, String.valueOf(snapshot.getNumber()));
+        response.setHeader(FORMAT_HEADER, "1");
+        streamer.write(response.getOutputStream(), boundary, snapshot);
+    }
 
-        // ЭЦП манифеста на основе (count + все строки)
-        String toSign = manifestTxt.toString();
-        String manifestSigB64 = signing.signString(toSign);  // 2.3 ЭЦП
-        manifestTxt.append("MANIFEST_SIG:").append(manifestSigB64).append("\n");
+    /** Дельта от релиза клиента (X-AV-Release / header.releaseNumber) до опубликованного; только весь релиз */
+    @GetMapping(value = "/api/signatures/delta", produces = "multipart/mixed")
+    public ResponseEntity<byte[]> delta(@RequestParam long since,
+                                        @RequestParam(required = false) Signature.ObjectType type,
+                                        WebRequest request) {
+        wholeReleaseOnly(type, "delta");
+        DeltaBundle delta = deltas.since(since, published());
+        if (delta == null) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Release " + since + " is not available, download full bundle");
+        }
+        if (delta.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        if (request.checkNotModified(delta.getEtag())) return null;
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(delta.getEtag())
+                .header(RELEASE_HEADER, String.valueOf(delta.getTo()))
+                .header(HttpHeaders.CONTENT_TYPE, MultipartBundle.contentType(delta.getBoundary()))
+                .body(delta.getBody());
+    }
 
-        byte[] manifestBytes = manifestTxt.toString().getBytes(StandardCharsets.UTF_8);
+    /** Подписанный индекс чанков опубликованного релиза: SHA-256 каждого чанка; у разделов чанков нет */
+    @GetMapping(value = "/api/signatures/chunks", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<byte[]> chunkIndex(@RequestParam(required = false) Signature.ObjectType type,
+                                             WebRequest request) {
+        wholeReleaseOnly(type, "chunks");
+        ReleaseSnapshot snapshot = withChunks(published());
+        if (request.checkNotModified(snapshot.getChunkIndexEtag())) return null;
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.getChunkIndexEtag())
+                .header(RELEASE_HEADER, String.valueOf(snapshot.getNumber()))
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(snapshot.getChunkIndex());
+    }
 
+    /** Чанк по SHA-256 содержимого: адрес не меняется, пока не меняется содержимое — кэшируется навсегда */
+    @GetMapping(value = "/api/signatures/chunks/{sha256}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void chunk(@PathVariable String sha256, @RequestParam(required = false) Signature.ObjectType type,
+                      WebRequest request, HttpServletResponse response) throws IOException {
+        wholeReleaseOnly(type, "chunks");
+        ReleaseSnapshot snapshot = withChunks(published());
+        ChunkIndex.Chunk c = snapshot.getChunks().find(sha256);
+        if (c == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Chunk " + sha256 + " is not in the release");
+        String etag = "\"" + sha256 + "\"";
+        if (request.checkNotModified(etag)) return;
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue());
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLength(c.length());
+        snapshot.getChunks().write(c, response.getOutputStream());
+    }
 
-        byte[] dataBytes = SignatureBytes.buildDataBin(items);
+    /**
+     * Путь до корня дерева Меркла опубликованного релиза (или раздела type) для одной записи.
+     * format=2 (?format= либо X-AV-Format) — дерево бандла v2: в нём и записи с маской, а корень — тот, что
+     * в MERKLE_ROOT manifest.txt v2; корень заголовка покрывает только записи v1.
+     */
+    @GetMapping(value = "/api/signatures/proof", produces = MediaType.APPLICATION_JSON_VALUE)
+    public MerkleProofDto proof(@RequestParam UUID id, @RequestParam(required = false) Signature.ObjectType type,
+                                @RequestParam(required = false) Integer format,
+                                @RequestHeader(value = FORMAT_HEADER, required = false) Integer formatHeader) {
+        ReleaseSnapshot snapshot = published(type);
+        MerkleTree tree = snapshot.getMerkle(format(format, formatHeader) == 2);
+        if (tree == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Release " + snapshot.getNumber() + " is not in Merkle mode");
+        }
+        int index = tree.indexOf(id);
+        if (index < 0) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Signature " + id + " is not in the release");
+        HexFormat hex = HexFormat.of();
+        return new MerkleProofDto(snapshot.getNumber(), id, index, tree.size(), hex.formatHex(tree.leaf(index)),
+                tree.proof(index).stream().map(hex::formatHex).toList(), hex.formatHex(tree.root()));
+    }
 
+    private static int format(Integer param, Integer header) {
+        int f = param != null ? param : header != null ? header : 1;
+        if (f != 1 && f != 2) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported data.bin format: " + f);
+        return f;
+    }
 
-        String boundary = "----AVBOUND-" + UUID.randomUUID();
-        byte[] part1Header = (
-                "--" + boundary + "\r\n" +
-                        "Content-Type: text/plain; charset=utf-8\r\n" +
-                        "Content-Disposition: attachment; filename=manifest.txt\r\n\r\n"
-        ).getBytes(StandardCharsets.UTF_8);
-        byte[] part2Header = (
-                "\r\n--" + boundary + "\r\n" +
-                        "Content-Type: application/octet-stream\r\n" +
-                        "Content-Disposition: attachment; filename=data.bin\r\n\r\n"
-        ).getBytes(StandardCharsets.UTF_8);
-        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
-
-        ByteBuffer bb = ByteBuffer.allocate(
-                part1Header.length + manifestBytes.length +
-                        part2Header.length + dataBytes.length + end.length
-        );
-        bb.put(part1Header);
-        bb.put(manifestBytes);
-        bb.put(part2Header);
-        bb.put(dataBytes);
-        bb.put(end);
+    /** Релиз, подписанный до смены ключа, индекс чанков не отдаёт до пересборки */
+    private static ReleaseSnapshot withChunks(ReleaseSnapshot snapshot) {
+        if (snapshot.getChunks() == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Release " + snapshot.getNumber() + " has no chunk index, download full bundle");
+        }
+        return snapshot;
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_TYPE, "multipart/mixed; boundary=" + boundary)
-                .body(bb.array());
+    /** Дельты и чанки строятся только по всему релизу — ?type= отклоняется явно, а не игнорируется */
+    private static void wholeReleaseOnly(Signature.ObjectType type, String what) {
+        if (type != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Partitions are not supported for " + what);
+        }
+    }
+
+    private ReleaseSnapshot published(Signature.ObjectType type) {
+        ReleaseSnapshot snapshot = published();
+        if (type == null) return snapshot;
+        ReleaseSnapshot part = snapshot.partition(type);
+        if (part == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Release " + snapshot.getNumber() + " has no partitions");
+        }
+        return part;
+    }
+
+    private ReleaseSnapshot published() {
+        ReleaseSnapshot snapshot = snapshots.current();
+        if (snapshot == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No published release yet");
+        }
+        return snapshot;
     }
 }
@@ -0,0 +1,71 @@
+package com.antivirus.server.controllers;
+
+import com.antivirus.server.models.Release;
+import com.antivirus.server.services.ReleaseService;
+import com.antivirus.server.services.ReleaseSnapshot;
+import com.antivirus.server.services.ReleaseSnapshotService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Управление релизами баз: сборка, просмотр, публикация (и откат на RETIRED-релиз) */
+@RestController
+@RequestMapping("/admin/releases")
+public class ReleaseController {
+
+    private final ReleaseService releases;
+    private final ReleaseSnapshotService snapshots;
+
+    public ReleaseController(ReleaseService releases, ReleaseSnapshotService snapshots) {
+        this.releases = releases;
+        this.snapshots = snapshots;
+    }
+
+    @GetMapping
+    public List<Release> list() {
+        return releases.list();
+    }
+
+    /** Что сейчас у клиентов и сколько правок ждёт следующего релиза */
+    @GetMapping("/status")
+    public Map<String, Object> status() {
+        ReleaseSnapshot cur = snapshots.current();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("published", cur == null ? null : cur.getNumber());
+        out.put("pendingChanges", releases.getPendingChanges());
+        return out;
+    }
+
+    @GetMapping("/{number}")
+    public ResponseEntity<Release> get(@PathVariable long number) {
+        return releases.get(number)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** Запустить сборку нового релиза; статус смотреть через GET /admin/releases/{number} */
+    @PostMapping
+    public ResponseEntity<Release> build(@RequestHeader(value = "X-User", required = false) String who) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(releases.requestBuild(who == null ? "api" : who));
+    }
+
+    @PostMapping("/{number}/publish")
+    public Release publish(@PathVariable long number) {
+        return releases.publish(number);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> notFound(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
@@ -0,0 +1,66 @@
+package com.antivirus.server.controllers;
+
+import com.antivirus.server.dto.ScanResultDto;
+import com.antivirus.server.services.JarScanner;
+import com.antivirus.server.services.ScanEngine;
+import com.antivirus.server.services.ScanService;
+import com.antivirus.server.services.VerdictCache;
+import com.antivirus.server.util.HashUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Проверка данных на сервере по активным сигнатурам — для агентов и почтового шлюза */
+@RestController
+@RequestMapping("/api/scan")
+public class ScanController {
+
+    private final ScanService scanService;
+    private final VerdictCache verdicts;
+    private final int maxBytes;
+
+    public ScanController(ScanService scanService,
+                          VerdictCache verdicts,
+                          @Value("${av.scan.max-bytes:33554432}") int maxBytes) {
+        this.scanService = scanService;
+        this.verdicts = verdicts;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Тело запроса — сами проверяемые байты (application/octet-stream).
+     * firstMatch — для архивов: остановиться на первом классе с совпадением.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> scan(@RequestParam(defaultValue = "false") boolean firstMatch,
+                                  HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxBytes) return tooLarge();
+        byte[] data = request.getInputStream().readNBytes(maxBytes + 1);
+        if (data.length > maxBytes) return tooLarge();
+
+        ScanEngine engine = scanService.engine();
+        String sha256 = HashUtil.sha256Hex(data);
+        String key = firstMatch ? sha256 + ":first" : sha256;
+        List<ScanEngine.Match> matches = verdicts.get(key, engine);
+        boolean cached = matches != null;
+        int skipped = 0;
+        if (!cached) {
+            JarScanner.Result r = scanService.scan(engine, data, firstMatch);
+            matches = r.matches();
+            skipped = r.skipped();
+            // неполный вердикт не кэшируем — иначе непроверенный архив так и останется «чистым»
+            if (!r.incomplete()) verdicts.put(key, engine, matches);
+        }
+        return ResponseEntity.ok(new ScanResultDto(engine.getGeneration(), data.length, sha256, cached, matches, skipped));
+    }
+
+    private ResponseEntity<String> tooLarge() {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Max " + maxBytes + " bytes");
+    }
+}
@@ -1,6 +1,8 @@
 package com.antivirus.server.controllers;
 
 import com.antivirus.server.models.Signature;
+import com.antivirus.server.repository.SignatureListJdbcRepository.Scope;
+import com.antivirus.server.services.InvalidSignatureException;
 import com.antivirus.server.services.SignatureService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
@@ -21,17 +23,32 @@ public class SignaturesCrudController {
         this.service = service;
     }
 
+    /**
+     * Без limit/cursor/fields — как раньше, весь список.
+     * С ними — страница {items, nextCursor}, items содержат только поля из fields (через запятую).
+     */
     @GetMapping
-    public List<Signature> getAll() {
-        // можно вызывать и getAllActive(), т.к. теперь есть алиас
-        return service.getAllSignatures();
+    public ResponseEntity<?> getAll(@RequestParam(required = false) Integer limit,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) List<String> fields) {
+        if (limit == null && cursor == null && fields == null) {
+            // можно вызывать и getAllActive(), т.к. теперь есть алиас
+            return ResponseEntity.ok(service.getAllSignatures());
+        }
+        return page(Scope.ACTIVE, null, null, limit, cursor, fields);
     }
 
     @GetMapping("/search")
-    public List<Signature> searchByDate(
+    public ResponseEntity<?> searchByDate(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
-        return service.findByUpdatedBetween(from, to);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) List<String> fields) {
+        if (limit == null && cursor == null && fields == null) {
+            return ResponseEntity.ok(service.findByUpdatedBetween(from, to));
+        }
+        return page(Scope.NOT_DELETED, from, to, limit, cursor, fields);
     }
 
     @PostMapping
@@ -64,8 +81,27 @@ public class SignaturesCrudController {
 
     /** Полный список, включая DELETED — удобно для диагностики */
     @GetMapping("/all")
-    public List<Signature> getAllIncludingDeleted() {
-        return service.getAllIncludingDeleted();
+    public ResponseEntity<?> getAllIncludingDeleted(@RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) List<String> fields) {
+        if (limit == null && cursor == null && fields == null) {
+            return ResponseEntity.ok(service.getAllIncludingDeleted());
+        }
+        return page(Scope.ALL, null, null, limit, cursor, fields);
+    }
+
+    private ResponseEntity<?> page(Scope scope, OffsetDateTime from, OffsetDateTime to,
+                                   Integer limit, String cursor, List<String> fields) {
+        try {
+            return ResponseEntity.ok(service.page(scope, from, to, limit, cursor, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @ExceptionHandler(InvalidSignatureException.class)
+    public ResponseEntity<String> invalid(InvalidSignatureException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 
     /** Выгрузка JSON файлом (как просили для Postman) */
@@ -0,0 +1,25 @@
+package com.antivirus.server.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Итог массового импорта: счётчики + ошибки по записям (index — позиция в исходном массиве) */
+public class ImportResultDto {
+    public long total;
+    public long imported;
+    public long failed;
+    /** Не больше av.import.max-errors штук; остальные только в счётчике failed */
+    public List<RecordError> errors = new ArrayList<>();
+
+    public static class RecordError {
+        public long index;
+        public String id;
+        public String message;
+
+        public RecordError(long index, String id, String message) {
+            this.index = index;
+            this.id = id;
+            this.message = message;
+        }
+    }
+}
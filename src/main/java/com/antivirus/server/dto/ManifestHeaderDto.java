@@ -1,17 +1,32 @@
 package com.antivirus.server.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.OffsetDateTime;
 
 public class ManifestHeaderDto {
     public String magicNumber;
+    public long releaseNumber;
     public OffsetDateTime releaseDate;
     public long count;
     public String headerSignature;
+    /** Алгоритм подписи заголовка, манифеста и записей (имя java.security.Signature) */
+    public String signatureAlgorithm;
+    /** Корень дерева Меркла (hex) — только у релизов в режиме Меркла, входит в подписанные данные заголовка */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String merkleRoot;
+    /** Тип записей раздела (PE/JAVA) — только у разделов, входит в подписанные данные заголовка */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String objectType;
 
-    public ManifestHeaderDto(String magicNumber, OffsetDateTime releaseDate, long count, String headerSignature) {
+    public ManifestHeaderDto(String magicNumber, long releaseNumber, OffsetDateTime releaseDate, long count,
+                             String headerSignature, String signatureAlgorithm, String merkleRoot) {
         this.magicNumber = magicNumber;
+        this.releaseNumber = releaseNumber;
         this.releaseDate = releaseDate;
         this.count = count;
         this.headerSignature = headerSignature;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.merkleRoot = merkleRoot;
     }
 }
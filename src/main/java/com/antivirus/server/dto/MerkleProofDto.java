@@ -0,0 +1,26 @@
+package com.antivirus.server.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/** Путь от записи до корня дерева Меркла релиза; хеши — hex */
+public class MerkleProofDto {
+    public long releaseNumber;
+    public UUID id;
+    public int index;
+    public int count;
+    public String leaf;
+    public List<String> path;
+    public String root;
+
+    public MerkleProofDto(long releaseNumber, UUID id, int index, int count, String leaf, List<String> path,
+                          String root) {
+        this.releaseNumber = releaseNumber;
+        this.id = id;
+        this.index = index;
+        this.count = count;
+        this.leaf = leaf;
+        this.path = path;
+        this.root = root;
+    }
+}
@@ -0,0 +1,33 @@
+package com.antivirus.server.dto;
+
+import com.antivirus.server.services.ScanEngine;
+
+import java.util.List;
+
+/**
+ * Результат проверки: номер сборки матчера, размер и хэш данных, сработавшие сигнатуры; cached — вердикт из кэша.
+ * incomplete — часть архива не проверена (skipped: слишком большие классы, слишком глубокие архивы),
+ * infected:false в этом случае не значит «чисто».
+ */
+public class ScanResultDto {
+    public long engineGeneration;
+    public long size;
+    public String sha256;
+    public boolean cached;
+    public boolean infected;
+    public boolean incomplete;
+    public int skipped;
+    public List<ScanEngine.Match> matches;
+
+    public ScanResultDto(long engineGeneration, long size, String sha256, boolean cached, List<ScanEngine.Match> matches,
+                         int skipped) {
+        this.engineGeneration = engineGeneration;
+        this.size = size;
+        this.sha256 = sha256;
+        this.cached = cached;
+        this.infected = !matches.isEmpty();
+        this.incomplete = skipped > 0;
+        this.skipped = skipped;
+        this.matches = matches;
+    }
+}
@@ -0,0 +1,15 @@
+package com.antivirus.server.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/** Страница списка сигнатур: только запрошенные поля + курсор следующей страницы (null — конец) */
+public class SignaturePageDto {
+    public List<Map<String, Object>> items;
+    public String nextCursor;
+
+    public SignaturePageDto(List<Map<String, Object>> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
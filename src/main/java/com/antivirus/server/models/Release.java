@@ -0,0 +1,128 @@
+package com.antivirus.server.models;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Нумерованный неизменяемый релиз баз.
+ * Состав релиза лежит в release_entries, клиентам отдаётся только опубликованный (PUBLISHED) релиз.
+ */
+@Entity
+@Table(name = "releases")
+public class Release {
+
+    public enum Status { BUILDING, READY, PUBLISHED, RETIRED, PRUNED, FAILED }
+
+    /** Номер релиза — монотонно растёт, он же метка клиента для дельт */
+    @Id
+    private Long number;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.BUILDING;
+
+    /** max(updatedAt) по записям релиза — попадает в подписанный заголовок */
+    @Column(name = "release_date")
+    private OffsetDateTime releaseDate;
+
+    @Column(name = "record_count")
+    private Long count;
+
+    /** SHA-256 manifest.txt + data.bin, из него строится ETag */
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    /** Подписи сохраняются, чтобы любой узел поднимал релиз байт-в-байт без повторной подписи */
+    @Column(name = "header_signature", columnDefinition = "text")
+    private String headerSignature;
+
+    @Column(name = "manifest_signature", columnDefinition = "text")
+    private String manifestSignature;
+
+    /** Алгоритм подписей релиза; null — релиз до появления настройки (SHA256withRSA) */
+    @Column(name = "signature_algorithm", length = 32)
+    private String signatureAlgorithm;
+
+    /** Корень дерева Меркла (hex); null — релиз с подписями записей в manifest.txt */
+    @Column(name = "merkle_root", length = 64)
+    private String merkleRoot;
+
+    @Column(name = "chunk_index_signature", columnDefinition = "text")
+    private String chunkIndexSignature;
+
+    /** Подпись manifest.txt бандла v2; null — в релизе нет записей с маской, manifest.txt у v1 и v2 общий */
+    @Column(name = "manifest_v2_signature", columnDefinition = "text")
+    private String manifestV2Signature;
+
+    /** Подписи разделов по ObjectType (ReleaseSnapshot.getPartitionSignatures); null — релиз без разделов */
+    @Column(name = "partition_signatures", columnDefinition = "text")
+    private String partitionSignatures;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    @Column(name = "created_by", length = 64)
+    private String createdBy;
+
+    @Column(name = "published_at")
+    private OffsetDateTime publishedAt;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    /** Оптимистическая блокировка: смена статуса с разных узлов не затрёт друг друга */
+    @Version
+    private Long version;
+
+    // ---------- getters / setters ----------
+    public Long getNumber() { return number; }
+    public void setNumber(Long number) { this.number = number; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public OffsetDateTime getReleaseDate() { return releaseDate; }
+    public void setReleaseDate(OffsetDateTime releaseDate) { this.releaseDate = releaseDate; }
+
+    public Long getCount() { return count; }
+    public void setCount(Long count) { this.count = count; }
+
+    public String getContentSha256() { return contentSha256; }
+    public void setContentSha256(String contentSha256) { this.contentSha256 = contentSha256; }
+
+    public String getHeaderSignature() { return headerSignature; }
+    public void setHeaderSignature(String headerSignature) { this.headerSignature = headerSignature; }
+
+    public String getManifestSignature() { return manifestSignature; }
+    public void setManifestSignature(String manifestSignature) { this.manifestSignature = manifestSignature; }
+
+    public String getSignatureAlgorithm() { return signatureAlgorithm; }
+    public void setSignatureAlgorithm(String signatureAlgorithm) { this.signatureAlgorithm = signatureAlgorithm; }
+
+    public String getMerkleRoot() { return merkleRoot; }
+    public void setMerkleRoot(String merkleRoot) { this.merkleRoot = merkleRoot; }
+
+    public String getChunkIndexSignature() { return chunkIndexSignature; }
+    public void setChunkIndexSignature(String chunkIndexSignature) { this.chunkIndexSignature = chunkIndexSignature; }
+
+    public String getManifestV2Signature() { return manifestV2Signature; }
+    public void setManifestV2Signature(String manifestV2Signature) { this.manifestV2Signature = manifestV2Signature; }
+
+    public String getPartitionSignatures() { return partitionSignatures; }
+    public void setPartitionSignatures(String partitionSignatures) { this.partitionSignatures = partitionSignatures; }
+
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
+
+    public String getCreatedBy() { return createdBy; }
+    public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
+
+    public OffsetDateTime getPublishedAt() { return publishedAt; }
+    public void setPublishedAt(OffsetDateTime publishedAt) { this.publishedAt = publishedAt; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
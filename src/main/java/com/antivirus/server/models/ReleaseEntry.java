@@ -0,0 +1,118 @@
+package com.antivirus.server.models;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Копия записи сигнатуры в том виде, в каком она вошла в релиз.
+ * Пишется и читается пакетно через ReleaseEntryJdbcRepository; сущность нужна для схемы.
+ */
+@Entity
+@Table(name = "release_entries", indexes = {
+        @Index(name = "idx_release_entries_ordinal", columnList = "release_number, ordinal")
+})
+@IdClass(ReleaseEntry.Key.class)
+public class ReleaseEntry {
+
+    @Id
+    @Column(name = "release_number")
+    private Long releaseNumber;
+
+    @Id
+    @Column(name = "signature_id", columnDefinition = "uuid")
+    private UUID signatureId;
+
+    /** Порядок записи в manifest.txt и data.bin */
+    @Column(nullable = false)
+    private Integer ordinal;
+
+    /** Signature.version на момент сборки — по нему считается дельта между релизами */
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "object_type", nullable = false, length = 16)
+    private Signature.ObjectType objectType;
+
+    @Column(name = "object_signature_prefix", length = 32)
+    private String objectSignaturePrefix;
+
+    @Column(name = "object_signature_length")
+    private Integer objectSignatureLength;
+
+    @Column(name = "object_signature", columnDefinition = "text")
+    private String objectSignature;
+
+    @Column(name = "offset_begin")
+    private Long offsetBegin;
+
+    @Column(name = "offset_end")
+    private Long offsetEnd;
+
+    @Column(name = "image_only")
+    private Boolean imageOnly;
+
+    @Column(columnDefinition = "text")
+    private String description;
+
+    @Column(name = "av_record_signature", columnDefinition = "bytea")
+    private byte[] avRecordSignature;
+
+    @Column(name = "record_bytes", columnDefinition = "bytea")
+    private byte[] recordBytes;
+
+    @Column(name = "created_at")
+    private OffsetDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long releaseNumber;
+        private UUID signatureId;
+
+        public Key() {}
+
+        public Key(Long releaseNumber, UUID signatureId) {
+            this.releaseNumber = releaseNumber;
+            this.signatureId = signatureId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k
+                    && Objects.equals(releaseNumber, k.releaseNumber)
+                    && Objects.equals(signatureId, k.signatureId);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(releaseNumber, signatureId); }
+    }
+
+    // ---------- getters ----------
+    public Long getReleaseNumber() { return releaseNumber; }
+    public UUID getSignatureId() { return signatureId; }
+    public Integer getOrdinal() { return ordinal; }
+    public Long getVersion() { return version; }
+    public String getName() { return name; }
+    public Signature.ObjectType getObjectType() { return objectType; }
+    public String getObjectSignaturePrefix() { return objectSignaturePrefix; }
+    public Integer getObjectSignatureLength() { return objectSignatureLength; }
+    public String getObjectSignature() { return objectSignature; }
+    public Long getOffsetBegin() { return offsetBegin; }
+    public Long getOffsetEnd() { return offsetEnd; }
+    public Boolean getImageOnly() { return imageOnly; }
+    public String getDescription() { return description; }
+    public byte[] getAvRecordSignature() { return avRecordSignature; }
+    public byte[] getRecordBytes() { return recordBytes; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+}
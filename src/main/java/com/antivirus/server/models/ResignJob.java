@@ -0,0 +1,95 @@
+package com.antivirus.server.models;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Фоновая переподпись всех записей.
+ * lastId — keyset-курсор последней закоммиченной порции: после рестарта задача продолжает с него.
+ */
+@Entity
+@Table(name = "resign_jobs")
+public class ResignJob {
+
+    public enum Status { RUNNING, DONE, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.RUNNING;
+
+    /** Сколько строк было в таблице на старте (для прогресса) */
+    @Column(nullable = false)
+    private long total;
+
+    /** Обработано строк (закоммиченные порции) */
+    @Column(nullable = false)
+    private long processed;
+
+    /** Из них реально получили новую подпись */
+    @Column(nullable = false)
+    private long resigned;
+
+    /** Пропущены: запись изменили параллельно (она и так переподписана при update) */
+    @Column(nullable = false)
+    private long skipped;
+
+    @Column(name = "last_id", columnDefinition = "uuid")
+    private UUID lastId;
+
+    @Column(name = "started_by", length = 64)
+    private String startedBy;
+
+    @Column(name = "started_at", nullable = false)
+    private OffsetDateTime startedAt = OffsetDateTime.now();
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    /** ManifestSigningService.getSigningKey() на старте: алгоритм и ключ, под которые переподписана таблица */
+    @Column(name = "signing_key", length = 128)
+    private String signingKey;
+
+    // ---------- getters / setters ----------
+    public Long getId() { return id; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+
+    public long getProcessed() { return processed; }
+    public void setProcessed(long processed) { this.processed = processed; }
+
+    public long getResigned() { return resigned; }
+    public void setResigned(long resigned) { this.resigned = resigned; }
+
+    public long getSkipped() { return skipped; }
+    public void setSkipped(long skipped) { this.skipped = skipped; }
+
+    public UUID getLastId() { return lastId; }
+    public void setLastId(UUID lastId) { this.lastId = lastId; }
+
+    public String getStartedBy() { return startedBy; }
+    public void setStartedBy(String startedBy) { this.startedBy = startedBy; }
+
+    public OffsetDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(OffsetDateTime startedAt) { this.startedAt = startedAt; }
+
+    public OffsetDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(OffsetDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getSigningKey() { return signingKey; }
+    public void setSigningKey(String signingKey) { this.signingKey = signingKey; }
+}
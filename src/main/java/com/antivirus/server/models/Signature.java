@@ -1,11 +1,14 @@
 package com.antivirus.server.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "signatures")
+@Table(name = "signatures", indexes = {
+        @Index(name = "idx_signatures_updated_at_id", columnList = "updated_at, id")
+})
 public class Signature {
 
     public enum Status { ACTIVE, DELETED }
@@ -37,6 +40,10 @@ public class Signature {
     @Column(name = "offset_end")
     private Long offsetEnd;
 
+    /** PE: искать только в PE-файлах и только в пределах образа, без overlay; null/false — по всему файлу */
+    @Column(name = "image_only")
+    private Boolean imageOnly;
+
     @Column(columnDefinition = "text")
     private String description;
 
@@ -47,6 +54,11 @@ public class Signature {
     @Column(name = "av_record_signature", columnDefinition = "bytea")
     private byte[] avRecordSignature;
 
+    /** Готовая бинарная запись data.bin (RecordEncoder) — считается при записи, её же и подписываем */
+    @JsonIgnore
+    @Column(name = "record_bytes", columnDefinition = "bytea")
+    private byte[] recordBytes;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 16)
     private Status status = Status.ACTIVE;
@@ -73,6 +85,28 @@ public class Signature {
     @PreUpdate
     public void preUpdate() { this.updatedAt = OffsetDateTime.now(); }
 
+    /** Копия полей записи (для аудита: сериализуется позже, в фоновом потоке) */
+    public Signature copy() {
+        Signature c = new Signature();
+        c.id = id;
+        c.name = name;
+        c.objectType = objectType;
+        c.objectSignaturePrefix = objectSignaturePrefix;
+        c.objectSignatureLength = objectSignatureLength;
+        c.objectSignature = objectSignature;
+        c.offsetBegin = offsetBegin;
+        c.offsetEnd = offsetEnd;
+        c.imageOnly = imageOnly;
+        c.description = description;
+        c.avRecordSignature = avRecordSignature;
+        c.recordBytes = recordBytes;
+        c.status = status;
+        c.version = version;
+        c.createdAt = createdAt;
+        c.updatedAt = updatedAt;
+        return c;
+    }
+
     // ---------- getters / setters ----------
     public UUID getId() { return id; }
     public void setId(UUID id) { this.id = id; }
@@ -98,12 +132,17 @@ public class Signature {
     public Long getOffsetEnd() { return offsetEnd; }
     public void setOffsetEnd(Long offsetEnd) { this.offsetEnd = offsetEnd; }
 
+    public Boolean getImageOnly() { return imageOnly; }
+    public void setImageOnly(Boolean imageOnly) { this.imageOnly = imageOnly; }
+
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
     public byte[] getAvRecordSignature() { return avRecordSignature; }
     public void setAvRecordSignature(byte[] avRecordSignature) { this.avRecordSignature = avRecordSignature; }
 
+    public byte[] getRecordBytes() { return recordBytes; }
+    public void setRecordBytes(byte[] recordBytes) { this.recordBytes = recordBytes; }
     public Status getStatus() { return status; }
     public void setStatus(Status status) { this.status = status; }
 
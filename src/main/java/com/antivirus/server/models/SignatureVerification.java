@@ -0,0 +1,38 @@
+package com.antivirus.server.models;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Последний результат проверки ЭЦП записи.
+ * Запись не перепроверяется, пока не изменились её version или ключ (keyId), а прошлая проверка была успешной.
+ */
+@Entity
+@Table(name = "signature_verifications")
+public class SignatureVerification {
+
+    @Id
+    @Column(name = "signature_id", columnDefinition = "uuid")
+    private UUID signatureId;
+
+    /** Signature.version, которую проверяли */
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private boolean ok;
+
+    /** Отпечаток сертификата, которым проверяли */
+    @Column(name = "key_id", nullable = false, length = 64)
+    private String keyId;
+
+    @Column(name = "verified_at", nullable = false)
+    private OffsetDateTime verifiedAt;
+
+    public UUID getSignatureId() { return signatureId; }
+    public Long getVersion() { return version; }
+    public boolean isOk() { return ok; }
+    public String getKeyId() { return keyId; }
+    public OffsetDateTime getVerifiedAt() { return verifiedAt; }
+}
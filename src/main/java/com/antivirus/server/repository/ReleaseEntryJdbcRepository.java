@@ -0,0 +1,134 @@
+package com.antivirus.server.repository;
+
+import com.antivirus.server.models.Signature;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Состав релизов (release_entries) — пакетная запись и курсорное чтение через JDBC:
+ * релиз содержит копию всей таблицы, поштучный JPA здесь слишком дорог.
+ */
+@Repository
+public class ReleaseEntryJdbcRepository {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int FETCH_SIZE = 500;
+
+    private static final String COLUMNS =
+            "signature_id, version, name, object_type, object_signature_prefix, object_signature_length, " +
+            "object_signature, offset_begin, offset_end, image_only, description, av_record_signature, record_bytes, created_at, updated_at";
+
+    private final JdbcTemplate jdbc;
+
+    public ReleaseEntryJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Записать состав релиза; порядок списка = ordinal */
+    public void insertAll(long release, List<Signature> items) {
+        String sql = "insert into release_entries (release_number, ordinal, " + COLUMNS + ") " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            int base = from;
+            int size = Math.min(BATCH_SIZE, items.size() - from);
+            jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int k) throws SQLException {
+                    Signature s = items.get(base + k);
+                    int i = 1;
+                    ps.setLong(i++, release);
+                    ps.setInt(i++, base + k);
+                    ps.setObject(i++, s.getId());
+                    ps.setLong(i++, s.getVersion() == null ? 0L : s.getVersion());
+                    ps.setString(i++, s.getName());
+                    ps.setString(i++, s.getObjectType() == null ? Signature.ObjectType.PE.name() : s.getObjectType().name());
+                    ps.setString(i++, s.getObjectSignaturePrefix());
+                    ps.setObject(i++, s.getObjectSignatureLength());
+                    ps.setString(i++, s.getObjectSignature());
+                    ps.setObject(i++, s.getOffsetBegin());
+                    ps.setObject(i++, s.getOffsetEnd());
+                    ps.setObject(i++, s.getImageOnly());
+                    ps.setString(i++, s.getDescription());
+                    ps.setBytes(i++, s.getAvRecordSignature());
+                    ps.setBytes(i++, s.getRecordBytes());
+                    ps.setObject(i++, s.getCreatedAt());
+                    ps.setObject(i, s.getUpdatedAt());
+                }
+
+                @Override
+                public int getBatchSize() { return size; }
+            });
+        }
+    }
+
+    /** Курсорный проход по релизу в порядке ordinal. Вызывать внутри транзакции (иначе PostgreSQL не держит курсор). */
+    public void forEach(long release, Consumer<Signature> consumer) {
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "select " + COLUMNS + " from release_entries where release_number = ? order by ordinal");
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setLong(1, release);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(toSignature(rs)));
+    }
+
+    public List<Signature> findAll(long release) {
+        List<Signature> out = new ArrayList<>();
+        forEach(release, out::add);
+        return out;
+    }
+
+    /** Записи релиза to, которых нет в релизе from в той же версии (добавленные и изменённые) */
+    public List<Signature> findChanged(long from, long to) {
+        return jdbc.query(
+                "select " + COLUMNS + " from release_entries p where p.release_number = ? and not exists (" +
+                        "select 1 from release_entries a where a.release_number = ? " +
+                        "and a.signature_id = p.signature_id and a.version = p.version) order by p.ordinal",
+                (rs, n) -> toSignature(rs), to, from);
+    }
+
+    /** Записи релиза from, которых больше нет в релизе to */
+    public List<UUID> findRemoved(long from, long to) {
+        return jdbc.query(
+                "select a.signature_id from release_entries a where a.release_number = ? and not exists (" +
+                        "select 1 from release_entries p where p.release_number = ? " +
+                        "and p.signature_id = a.signature_id) order by a.ordinal",
+                (rs, n) -> rs.getObject(1, UUID.class), from, to);
+    }
+
+    public int deleteRelease(long release) {
+        return jdbc.update("delete from release_entries where release_number = ?", release);
+    }
+
+    private static Signature toSignature(ResultSet rs) throws SQLException {
+        Signature s = new Signature();
+        s.setId(rs.getObject("signature_id", UUID.class));
+        s.setVersion(rs.getLong("version"));
+        s.setName(rs.getString("name"));
+        s.setObjectType(Signature.ObjectType.valueOf(rs.getString("object_type")));
+        s.setObjectSignaturePrefix(rs.getString("object_signature_prefix"));
+        s.setObjectSignatureLength(rs.getObject("object_signature_length", Integer.class));
+        s.setObjectSignature(rs.getString("object_signature"));
+        s.setOffsetBegin(rs.getObject("offset_begin", Long.class));
+        s.setOffsetEnd(rs.getObject("offset_end", Long.class));
+        s.setImageOnly(rs.getObject("image_only", Boolean.class));
+        s.setDescription(rs.getString("description"));
+        s.setAvRecordSignature(rs.getBytes("av_record_signature"));
+        s.setRecordBytes(rs.getBytes("record_bytes"));
+        s.setCreatedAt(rs.getObject("created_at", OffsetDateTime.class));
+        s.setUpdatedAt(rs.getObject("updated_at", OffsetDateTime.class));
+        s.setStatus(Signature.Status.ACTIVE);
+        return s;
+    }
+}
@@ -0,0 +1,21 @@
+package com.antivirus.server.repository;
+
+import com.antivirus.server.models.Release;
+import com.antivirus.server.models.Release.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ReleaseRepository extends JpaRepository<Release, Long> {
+
+    @Query("select coalesce(max(r.number), 0) from Release r")
+    long findMaxNumber();
+
+    Optional<Release> findFirstByStatus(Status status);
+
+    List<Release> findTop50ByOrderByNumberDesc();
+
+    List<Release> findAllByStatusOrderByNumberDesc(Status status);
+}
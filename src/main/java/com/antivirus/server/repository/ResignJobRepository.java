@@ -0,0 +1,19 @@
+package com.antivirus.server.repository;
+
+import com.antivirus.server.models.ResignJob;
+import com.antivirus.server.models.ResignJob.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ResignJobRepository extends JpaRepository<ResignJob, Long> {
+
+    List<ResignJob> findAllByStatus(Status status);
+
+    Optional<ResignJob> findFirstByOrderByIdDesc();
+
+    boolean existsByStatus(Status status);
+
+    boolean existsBySigningKey(String signingKey);
+}
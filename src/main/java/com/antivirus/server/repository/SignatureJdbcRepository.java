@@ -0,0 +1,64 @@
+package com.antivirus.server.repository;
+
+import com.antivirus.server.models.Signature;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/** Пакетный upsert сигнатур для импорта: одна JDBC-пачка вместо save() на каждую строку */
+@Repository
+public class SignatureJdbcRepository {
+
+    private static final String UPSERT_SQL =
+            "insert into signatures (id, name, object_type, object_signature_prefix, object_signature_length, " +
+            "object_signature, offset_begin, offset_end, image_only, description, av_record_signature, record_bytes, status, " +
+            "version, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'ACTIVE', 0, ?, ?) " +
+            "on conflict (id) do update set name = excluded.name, object_type = excluded.object_type, " +
+            "object_signature_prefix = excluded.object_signature_prefix, " +
+            "object_signature_length = excluded.object_signature_length, " +
+            "object_signature = excluded.object_signature, offset_begin = excluded.offset_begin, " +
+            "offset_end = excluded.offset_end, image_only = excluded.image_only, description = excluded.description, " +
+            "av_record_signature = excluded.av_record_signature, record_bytes = excluded.record_bytes, status = 'ACTIVE', " +
+            "version = signatures.version + 1, updated_at = excluded.updated_at";
+
+    private final JdbcTemplate jdbc;
+
+    public SignatureJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void upsertAll(List<Signature> items) {
+        OffsetDateTime now = OffsetDateTime.now();
+        jdbc.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Signature s = items.get(i);
+                ps.setObject(1, s.getId());
+                ps.setString(2, s.getName());
+                ps.setString(3, s.getObjectType().name());
+                ps.setString(4, s.getObjectSignaturePrefix());
+                ps.setObject(5, s.getObjectSignatureLength(), Types.INTEGER);
+                ps.setString(6, s.getObjectSignature());
+                ps.setObject(7, s.getOffsetBegin(), Types.BIGINT);
+                ps.setObject(8, s.getOffsetEnd(), Types.BIGINT);
+                ps.setObject(9, s.getImageOnly(), Types.BOOLEAN);
+                ps.setString(10, s.getDescription());
+                ps.setBytes(11, s.getAvRecordSignature());
+                ps.setBytes(12, s.getRecordBytes());
+                ps.setObject(13, now);
+                ps.setObject(14, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return items.size();
+            }
+        });
+    }
+}
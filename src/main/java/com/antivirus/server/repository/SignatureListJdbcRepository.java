@@ -0,0 +1,122 @@
+package com.antivirus.server.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Постраничный список сигнатур: keyset по (updated_at, id) и выборка только запрошенных колонок.
+ * Стоимость страницы не зависит ни от её номера, ни от размера таблицы.
+ */
+@Repository
+public class SignatureListJdbcRepository {
+
+    /** JSON-поле -> колонка; всё, чего здесь нет, запросить нельзя */
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+    static {
+        COLUMNS.put("id", "id");
+        COLUMNS.put("name", "name");
+        COLUMNS.put("objectType", "object_type");
+        COLUMNS.put("objectSignaturePrefix", "object_signature_prefix");
+        COLUMNS.put("objectSignatureLength", "object_signature_length");
+        COLUMNS.put("objectSignature", "object_signature");
+        COLUMNS.put("offsetBegin", "offset_begin");
+        COLUMNS.put("offsetEnd", "offset_end");
+        COLUMNS.put("imageOnly", "image_only");
+        COLUMNS.put("description", "description");
+        COLUMNS.put("avRecordSignature", "av_record_signature");
+        COLUMNS.put("status", "status");
+        COLUMNS.put("version", "version");
+        COLUMNS.put("createdAt", "created_at");
+        COLUMNS.put("updatedAt", "updated_at");
+    }
+
+    public enum Scope { ACTIVE, ALL, NOT_DELETED }
+
+    public record Cursor(OffsetDateTime updatedAt, UUID id) {
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((updatedAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String s) {
+            try {
+                String[] p = new String(Base64.getUrlDecoder().decode(s), StandardCharsets.UTF_8).split("\\|", 2);
+                return new Cursor(OffsetDateTime.parse(p[0]), UUID.fromString(p[1]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
+    public record Page(List<Map<String, Object>> items, Cursor next) {}
+
+    private final JdbcTemplate jdbc;
+
+    public SignatureListJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** fields == null/пусто — все поля; from/to — необязательный интервал по updated_at */
+    public Page page(Scope scope, OffsetDateTime from, OffsetDateTime to, Cursor after, int limit, List<String> fields) {
+        List<String> names = fields == null || fields.isEmpty() ? new ArrayList<>(COLUMNS.keySet()) : fields;
+        StringBuilder select = new StringBuilder("select updated_at as k_updated_at, id as k_id");
+        for (String f : names) {
+            String col = COLUMNS.get(f);
+            if (col == null) throw new IllegalArgumentException("Unknown field: " + f);
+            select.append(", ").append(col);
+        }
+
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        List<Object> args = new ArrayList<>();
+        switch (scope) {
+            case ACTIVE -> where.append(" and status = 'ACTIVE'");
+            case NOT_DELETED -> where.append(" and status <> 'DELETED'");
+            case ALL -> { }
+        }
+        if (from != null) { where.append(" and updated_at >= ?"); args.add(from); }
+        if (to != null) { where.append(" and updated_at <= ?"); args.add(to); }
+        if (after != null) {
+            where.append(" and (updated_at, id) > (?, ?)");
+            args.add(after.updatedAt());
+            args.add(after.id());
+        }
+        args.add(limit + 1); // +1 строка — узнать, есть ли следующая страница
+
+        String sql = select + " from signatures" + where + " order by updated_at, id limit ?";
+        List<Row> rows = jdbc.query(sql, (rs, n) -> toRow(rs, names), args.toArray());
+
+        boolean more = rows.size() > limit;
+        List<Map<String, Object>> items = new ArrayList<>(Math.min(rows.size(), limit));
+        for (int i = 0; i < rows.size() && i < limit; i++) items.add(rows.get(i).values());
+        Cursor next = more ? rows.get(limit - 1).key() : null;
+        return new Page(items, next);
+    }
+
+    private record Row(Cursor key, Map<String, Object> values) {}
+
+    private static Row toRow(ResultSet rs, List<String> names) throws SQLException {
+        Cursor key = new Cursor(rs.getObject("k_updated_at", OffsetDateTime.class), rs.getObject("k_id", UUID.class));
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String f : names) {
+            String col = COLUMNS.get(f);
+            Object v = switch (col) {
+                case "created_at", "updated_at" -> rs.getObject(col, OffsetDateTime.class);
+                case "id" -> rs.getObject(col, UUID.class);
+                default -> rs.getObject(col);
+            };
+            values.put(f, v);
+        }
+        return new Row(key, values);
+    }
+}
@@ -2,19 +2,42 @@ package com.antivirus.server.repository;
 
 import com.antivirus.server.models.Signature;
 import com.antivirus.server.models.Signature.Status;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface SignatureRepository extends JpaRepository<Signature, UUID> {
 
-    @Query("select max(s.updatedAt) from Signature s where s.status <> 'DELETED'")
-    OffsetDateTime findLastReleaseDate();
-
     List<Signature> findAllByStatus(Status status);
 
+    /** Курсорное чтение (fetch size) — сборка релиза без лишних копий в persistence context */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select s from Signature s where s.status = :status order by s.id")
+    Stream<Signature> streamAllByStatus(Status status);
+
+    /** Keyset-страница по id — для фоновых проходов по всей таблице */
+    List<Signature> findByIdGreaterThanOrderByIdAsc(UUID id, Limit limit);
+
+    /**
+     * Keyset-страница ACTIVE-записей, которые надо (пере)проверить:
+     * ещё не проверялись, изменились (version), проверялись другим ключом или прошлая проверка неуспешна.
+     */
+    @Query("select s from Signature s where s.id > :after and s.status = 'ACTIVE' and not exists (" +
+            "select 1 from SignatureVerification v where v.signatureId = s.id " +
+            "and v.version = s.version and v.keyId = :keyId and v.ok = true) order by s.id")
+    List<Signature> findUnverifiedAfter(UUID after, String keyId, Pageable page);
+
     List<Signature> findAllByUpdatedAtBetweenAndStatusNot(OffsetDateTime from, OffsetDateTime to, Status status);
 }
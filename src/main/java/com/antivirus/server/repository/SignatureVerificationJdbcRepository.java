@@ -0,0 +1,35 @@
+package com.antivirus.server.repository;
+
+import com.antivirus.server.models.Signature;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Пакетная запись результатов проверки ЭЦП (upsert по signature_id) */
+@Repository
+public class SignatureVerificationJdbcRepository {
+
+    private static final String UPSERT_SQL =
+            "insert into signature_verifications (signature_id, version, ok, key_id, verified_at) values (?, ?, ?, ?, ?) " +
+            "on conflict (signature_id) do update set version = excluded.version, ok = excluded.ok, " +
+            "key_id = excluded.key_id, verified_at = excluded.verified_at";
+
+    private final JdbcTemplate jdbc;
+
+    public SignatureVerificationJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void saveAll(List<Signature> items, List<Boolean> results, String keyId) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Object[]> args = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Signature s = items.get(i);
+            args.add(new Object[]{s.getId(), s.getVersion() == null ? 0L : s.getVersion(), results.get(i), keyId, now});
+        }
+        jdbc.batchUpdate(UPSERT_SQL, args);
+    }
+}
@@ -0,0 +1,19 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.models.SignatureAudit.ChangeType;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Событие аудита в очереди AuditWriter.
+ * oldState/newState — копии записи (Signature.copy()), в JSON их превращает фоновый писатель.
+ */
+public record AuditEvent(UUID signatureId, ChangeType type, OffsetDateTime changedAt, String changedBy,
+                         Signature oldState, Signature newState) {
+
+    public static AuditEvent of(Signature current, Signature oldState, ChangeType type, String by) {
+        return new AuditEvent(current.getId(), type, OffsetDateTime.now(), by, oldState, current.copy());
+    }
+}
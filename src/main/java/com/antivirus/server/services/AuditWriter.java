@@ -0,0 +1,210 @@
+package com.antivirus.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind журнал аудита.
+ * События попадают в ограниченную очередь после коммита бизнес-транзакции, фоновый поток сериализует их
+ * в JSON и пишет в signature_audit пакетными multi-row insert. Переполненная очередь задерживает отправителя
+ * не дольше av.audit.offer-timeout-ms (backpressure); не уместившееся событие пишется в лог с уровнем ERROR
+ * и отбрасывается — бизнес-транзакция уже закоммичена, ждать без конца в afterCommit нельзя.
+ * При остановке приложения очередь дописывается до конца.
+ * Пачка, которую не удалось записать, не выбрасывается: поток повторяет её с экспоненциальной паузой
+ * (до av.audit.max-backoff-ms), а новые события тем временем копятся в очереди.
+ * av.audit.mode=sync — писать сразу в текущей транзакции (тесты, отладка).
+ */
+@Component
+public class AuditWriter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditWriter.class);
+
+    /** Останавливаемся после веб-сервера и фоновых задач, но до закрытия DataSource */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final String INSERT_HEAD =
+            "insert into signature_audit (signature_id, change_type, changed_at, changed_by, old_json, new_json) values ";
+    /** old_json/new_json — @Lob (oid в PostgreSQL): текст кладётся в large object тем же insert */
+    private static final String ROW = "(?, ?, ?, ?, lo_from_bytea(0, convert_to(?::text, 'UTF8')), " +
+            "lo_from_bytea(0, convert_to(?::text, 'UTF8')))";
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+    private final boolean sync;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long maxBackoffMs;
+    private final long offerTimeoutMs;
+    private final BlockingQueue<AuditEvent> queue;
+    /** Пачка, не записанная фоновым потоком к остановке, — её дописывает stop() */
+    private final List<AuditEvent> unwritten = new ArrayList<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AuditWriter(JdbcTemplate jdbc,
+                       ObjectMapper mapper,
+                       @Value("${av.audit.mode:async}") String mode,
+                       @Value("${av.audit.queue-capacity:10000}") int capacity,
+                       @Value("${av.audit.batch-size:500}") int batchSize,
+                       @Value("${av.audit.flush-interval-ms:200}") long flushIntervalMs,
+                       @Value("${av.audit.max-backoff-ms:30000}") long maxBackoffMs,
+                       @Value("${av.audit.offer-timeout-ms:1000}") long offerTimeoutMs) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.sync = "sync".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public void submit(AuditEvent event) {
+        submitAll(List.of(event));
+    }
+
+    /** Внутри транзакции события уходят в очередь только после её коммита */
+    public void submitAll(List<AuditEvent> events) {
+        if (events.isEmpty()) return;
+        if (sync || !running) {
+            write(events);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() { enqueue(events); }
+            });
+        } else {
+            enqueue(events);
+        }
+    }
+
+    private void enqueue(List<AuditEvent> events) {
+        if (!running) {
+            write(events);
+            return;
+        }
+        for (AuditEvent e : events) {
+            boolean queued;
+            try {
+                queued = queue.offer(e, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (!queued) log.error("Audit queue is full, event dropped: {}", toJson(e));
+        }
+    }
+
+    private void loop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        long backoff = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    AuditEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                } else if (backoff > 0 && running) {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                }
+                write(batch);
+                batch.clear();
+                backoff = 0;
+            } catch (InterruptedException e) {
+                // stop() будит поток — дописываем остаток и выходим
+            } catch (Exception e) {
+                if (!running) {
+                    // при остановке не ждём: пачку допишет stop() вместе с очередью
+                    synchronized (unwritten) { unwritten.addAll(batch); }
+                    return;
+                }
+                backoff = Math.min(maxBackoffMs, Math.max(flushIntervalMs, backoff * 2));
+                log.warn("Cannot write {} audit events, retry in {} ms", batch.size(), backoff, e);
+            }
+        }
+    }
+
+    private void write(List<AuditEvent> events) {
+        for (int from = 0; from < events.size(); from += batchSize) {
+            List<AuditEvent> chunk = events.subList(from, Math.min(events.size(), from + batchSize));
+            StringBuilder sql = new StringBuilder(INSERT_HEAD.length() + chunk.size() * (ROW.length() + 2));
+            sql.append(INSERT_HEAD);
+            Object[] args = new Object[chunk.size() * 6];
+            int i = 0;
+            for (AuditEvent e : chunk) {
+                if (i > 0) sql.append(", ");
+                sql.append(ROW);
+                args[i++] = e.signatureId();
+                args[i++] = e.type().name();
+                args[i++] = e.changedAt();
+                args[i++] = e.changedBy();
+                args[i++] = e.oldState() == null ? null : toJson(e.oldState());
+                args[i++] = e.newState() == null ? null : toJson(e.newState());
+            }
+            jdbc.update(sql.toString(), args);
+        }
+    }
+
+    private String toJson(Object o) {
+        try { return mapper.writeValueAsString(o); }
+        catch (Exception e) { return "{}"; }
+    }
+
+    // ---------- SmartLifecycle ----------
+    @Override
+    public synchronized void start() {
+        if (running || sync) return;
+        running = true;
+        worker = new Thread(this::loop, "audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<AuditEvent> rest;
+        synchronized (unwritten) {
+            rest = new ArrayList<>(unwritten);
+            unwritten.clear();
+        }
+        queue.drainTo(rest);
+        if (rest.isEmpty()) return;
+        try {
+            write(rest);
+        } catch (Exception e) {
+            // БД недоступна и при остановке — события остаются хотя бы в логе
+            log.error("Cannot write {} audit events on shutdown", rest.size(), e);
+            for (AuditEvent ev : rest) log.error("Unwritten audit event: {}", toJson(ev));
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    @Override
+    public int getPhase() { return PHASE; }
+}
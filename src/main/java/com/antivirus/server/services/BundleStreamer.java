@@ -0,0 +1,103 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.repository.ReleaseEntryJdbcRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Потоковая сборка бандла: записи релиза читаются курсором и сразу пишутся в сокет через буфер фиксированного размера.
+ * Память на одну выдачу не зависит от количества сигнатур.
+ * Формат совпадает с ReleaseSnapshot (кроме boundary); подпись манифеста берётся из релиза,
+ * у раздела (ReleaseSnapshot.getPartition) — из раздела, записи других типов пропускаются.
+ * Отдаётся только v1, поэтому записи с маской (SignatureBytes.isMasked) тоже пропускаются.
+ */
+@Service
+public class BundleStreamer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReleaseEntryJdbcRepository entries;
+    private final TransactionTemplate tx;
+
+    public BundleStreamer(ReleaseEntryJdbcRepository entries, PlatformTransactionManager txManager) {
+        this.entries = entries;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setReadOnly(true);
+    }
+
+    public void write(OutputStream socket, String boundary, ReleaseSnapshot release) throws IOException {
+        try {
+            tx.executeWithoutResult(status -> {
+                try {
+                    writeInTx(new BufferedOutputStream(socket, BUFFER_SIZE), boundary, release);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeInTx(BufferedOutputStream out, String boundary, ReleaseSnapshot release) throws IOException {
+        ByteBuffer scratch = ByteBuffer.allocate(BUFFER_SIZE);
+        long number = release.getNumber();
+        Base64.Encoder b64 = Base64.getEncoder();
+
+        // --- manifest.txt ---
+        out.write(MultipartBundle.manifestPartHeader(boundary));
+        out.write((release.getHeader().count + "\n").getBytes(StandardCharsets.US_ASCII));
+        String root = release.getHeader().merkleRoot;
+        Signature.ObjectType partition = release.getPartition();
+        entries.forEach(number, s -> {
+            if (skip(s, partition)) return;
+            if (root != null) {
+                write(out, (s.getId() + "\n").getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            byte[] sig = s.getAvRecordSignature() == null ? new byte[0] : s.getAvRecordSignature();
+            write(out, (s.getId() + ":" + b64.encodeToString(sig) + "\n").getBytes(StandardCharsets.US_ASCII));
+        });
+        if (root != null) out.write(("MERKLE_ROOT:" + root + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(("MANIFEST_SIG:" + release.getManifestSignature() + "\n").getBytes(StandardCharsets.US_ASCII));
+
+        // --- data.bin ---
+        out.write(MultipartBundle.dataPartHeader(boundary));
+        RecordEncoder.ChannelWriter records = new RecordEncoder.ChannelWriter(Channels.newChannel(out), scratch);
+        entries.forEach(number, s -> {
+            if (skip(s, partition)) return;
+            try {
+                if (s.getRecordBytes() != null) records.write(s.getRecordBytes());
+                else records.write(s);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        records.flush();
+        out.write(MultipartBundle.end(boundary));
+        out.flush();
+    }
+
+    private static boolean skip(Signature s, Signature.ObjectType partition) {
+        return partition != null && ReleaseSnapshotService.typeOf(s) != partition || SignatureBytes.isMasked(s);
+    }
+
+    private static void write(OutputStream out, byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
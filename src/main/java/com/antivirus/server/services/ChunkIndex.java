@@ -0,0 +1,130 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Базы релиза, разрезанные на чанки с адресацией по содержимому.
+ * Границы — старшие bits бит id записи: записи релиза идут по id, так что каждый чанк — непрерывный участок,
+ * а правка записи меняет только её чанк. Чанк — [id записей (по 16 байт, big-endian)][те же записи data.bin подряд],
+ * т.е. самодостаточен: клиент собирает из чанков и список GUID, и data.bin.
+ * Отдельной копии байт нет: записи отдаются срезом data.bin релиза, в памяти — только id и границы записей.
+ * Индекс (текст) перечисляет SHA-256 непустых чанков и подписывается один раз на релиз.
+ */
+public final class ChunkIndex {
+
+    /** first — номер первой записи чанка в релизе, length — длина чанка в байтах */
+    public record Chunk(int prefix, String sha256, int records, int first, int length) {}
+
+    private final int bits;
+    private final byte[] data;
+    private final int from;
+    private final int[] bounds;
+    /** id записей: старшая и младшая половины подряд */
+    private final long[] ids;
+    private final List<Chunk> chunks;
+    private final Map<String, Chunk> bySha;
+
+    private ChunkIndex(int bits, byte[] data, int from, int[] bounds, long[] ids) {
+        this.bits = bits;
+        this.data = data;
+        this.from = from;
+        this.bounds = bounds;
+        this.ids = ids;
+        List<Chunk> list = new ArrayList<>();
+        int first = 0;
+        for (int i = 1; i <= size(); i++) {
+            if (i == size() || prefix(i) != prefix(first)) {
+                list.add(chunk(first, i));
+                first = i;
+            }
+        }
+        this.chunks = List.copyOf(list);
+        this.bySha = new HashMap<>(chunks.size() * 2);
+        for (Chunk c : chunks) bySha.put(c.sha256(), c);
+    }
+
+    /** items — в порядке релиза (по id); bits — 0..16, 0 — один чанк на весь релиз */
+    public static ChunkIndex build(List<Signature> items, int bits) {
+        return build(items, SignatureBytes.buildDataBin(items), 0, SignatureBytes.recordBounds(items), bits);
+    }
+
+    /**
+     * По готовому data.bin: он лежит в data с позиции from (например, внутри бандла снимка),
+     * bounds — границы записей относительно from (SignatureBytes.recordBounds). От items берутся только id.
+     */
+    public static ChunkIndex build(List<Signature> items, byte[] data, int from, int[] bounds, int bits) {
+        if (bits < 0 || bits > 16) throw new IllegalArgumentException("chunk bits must be 0..16: " + bits);
+        long[] ids = new long[items.size() * 2];
+        for (int i = 0; i < items.size(); i++) {
+            ids[2 * i] = items.get(i).getId().getMostSignificantBits();
+            ids[2 * i + 1] = items.get(i).getId().getLeastSignificantBits();
+        }
+        return new ChunkIndex(bits, data, from, bounds, ids);
+    }
+
+    public List<Chunk> getChunks() { return chunks; }
+
+    /** null — такого чанка в релизе нет */
+    public Chunk find(String sha256) {
+        return bySha.get(sha256);
+    }
+
+    /** Записать байты чанка: id его записей, затем срез data.bin */
+    public void write(Chunk c, OutputStream out) throws IOException {
+        out.write(idBytes(c.first(), c.first() + c.records()));
+        out.write(data, from + bounds[c.first()], bounds[c.first() + c.records()] - bounds[c.first()]);
+    }
+
+    /**
+     * Текст индекса без подписи: RELEASE, BITS, CHUNKS:n, затем строки prefix(hex):sha256:records:bytes.
+     * Подпись дописывается строкой CHUNKS_SIG.
+     */
+    public String text(long releaseNumber) {
+        StringBuilder sb = new StringBuilder(chunks.size() * 96 + 64);
+        sb.append("RELEASE:").append(releaseNumber).append("\n");
+        sb.append("BITS:").append(bits).append("\n");
+        sb.append("CHUNKS:").append(chunks.size()).append("\n");
+        for (Chunk c : chunks) {
+            sb.append(Integer.toHexString(c.prefix())).append(':').append(c.sha256()).append(':')
+                    .append(c.records()).append(':').append(c.length()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private int size() {
+        return ids.length / 2;
+    }
+
+    private int prefix(int record) {
+        return bits == 0 ? 0 : (int) (ids[2 * record] >>> (64 - bits));
+    }
+
+    private byte[] idBytes(int first, int to) {
+        ByteBuffer b = ByteBuffer.allocate((to - first) * 16);
+        for (int i = first; i < to; i++) b.putLong(ids[2 * i]).putLong(ids[2 * i + 1]);
+        return b.array();
+    }
+
+    private Chunk chunk(int first, int to) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(idBytes(first, to));
+            md.update(data, from + bounds[first], bounds[to] - bounds[first]);
+            int length = (to - first) * 16 + bounds[to] - bounds[first];
+            return new Chunk(prefix(first), HexFormat.of().formatHex(md.digest()), to - first, first, length);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
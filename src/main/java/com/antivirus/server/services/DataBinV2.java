@@ -0,0 +1,86 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * data.bin версии 2 — для отображения в память и двоичного поиска без разбора файла (little-endian).
+ * Заголовок (64 байта): "AVD2", int version = 2, int headerSize = 64, int count, long directoryOffset,
+ * int entrySize = 24, int alignment = 8, long recordsOffset, long recordsLength, 16 байт нулей.
+ * Каталог: count элементов по 24 байта — long prefix, long offset (от начала файла), int length, int ordinal,
+ * отсортированы по prefix (беззнаково), при равенстве — по ordinal. ordinal — номер записи в релизе,
+ * т.е. строка GUID в manifest.txt. Записи — в формате v1 (RecordEncoder) в порядке релиза,
+ * каждая с границы alignment; длина берётся из каталога, а не из полей записи.
+ */
+public final class DataBinV2 {
+
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 64;
+    public static final int ENTRY_SIZE = 24;
+    public static final int ALIGNMENT = 8;
+    private static final byte[] MAGIC = {'A', 'V', 'D', '2'};
+
+    private DataBinV2() {}
+
+    public static byte[] build(List<Signature> items) {
+        return build(SignatureBytes.buildDataBin(items), 0, SignatureBytes.recordBounds(items));
+    }
+
+    /**
+     * Из готового data.bin v1, лежащего в data с позиции from (например, внутри бандла снимка);
+     * bounds — границы записей относительно from (SignatureBytes.recordBounds)
+     */
+    public static byte[] build(byte[] data, int from, int[] bounds) {
+        int n = bounds.length - 1;
+        long[] prefixes = new long[n];
+        long recordsLength = 0;
+        for (int i = 0; i < n; i++) {
+            prefixes[i] = prefix(data, from + bounds[i]);
+            recordsLength += align(bounds[i + 1] - bounds[i]);
+        }
+        long recordsOffset = HEADER_SIZE + (long) n * ENTRY_SIZE;
+        long total = recordsOffset + recordsLength;
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalStateException("data.bin v2 is too large: " + total);
+
+        ByteBuffer out = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(MAGIC).putInt(VERSION).putInt(HEADER_SIZE).putInt(n)
+                .putLong(HEADER_SIZE).putInt(ENTRY_SIZE).putInt(ALIGNMENT)
+                .putLong(recordsOffset).putLong(recordsLength);
+
+        long[] offsets = new long[n];
+        long at = recordsOffset;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = at;
+            out.put((int) at, data, from + bounds[i], bounds[i + 1] - bounds[i]);
+            at += align(bounds[i + 1] - bounds[i]);
+        }
+
+        out.position(HEADER_SIZE);
+        for (int i : byPrefix(prefixes)) {
+            out.putLong(prefixes[i]).putLong(offsets[i]).putInt(bounds[i + 1] - bounds[i]).putInt(i);
+        }
+        return out.array();
+    }
+
+    /** prefix записи v1, начинающейся с at: long сразу за именем (int nameLen, name) */
+    static long prefix(byte[] data, int at) {
+        ByteBuffer b = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        return b.getLong(at + 4 + b.getInt(at));
+    }
+
+    /** Номера записей в порядке prefix (беззнаково); сортировка устойчивая — при равенстве по ordinal */
+    private static int[] byPrefix(long[] prefixes) {
+        Integer[] order = new Integer[prefixes.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(prefixes[a], prefixes[b]));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
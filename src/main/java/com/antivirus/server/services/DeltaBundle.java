@@ -0,0 +1,49 @@
+package com.antivirus.server.services;
+
+/**
+ * Подписанная дельта между релизом клиента и опубликованным релизом.
+ * manifest.txt:
+ *   count
+ *   GUID:signature      — добавленные/изменённые записи (в data.bin в том же порядке)
+ *   DELETED:n
+ *   GUID                — tombstone, клиент удаляет запись
+ *   RANGE:from/to       — номера релизов
+ *   MANIFEST_SIG:...    — ЭЦП всех строк выше
+ */
+public final class DeltaBundle {
+
+    private final long from;
+    private final long to;
+    private final int upserts;
+    private final int tombstones;
+    private final byte[] body;
+    private final String boundary;
+    private final String etag;
+
+    DeltaBundle(long from, long to, int upserts, int tombstones, byte[] body, String boundary, String etag) {
+        this.from = from;
+        this.to = to;
+        this.upserts = upserts;
+        this.tombstones = tombstones;
+        this.body = body;
+        this.boundary = boundary;
+        this.etag = etag;
+    }
+
+    public boolean isEmpty() { return upserts == 0 && tombstones == 0; }
+
+    public long getFrom() { return from; }
+
+    /** Релиз клиента после применения дельты */
+    public long getTo() { return to; }
+
+    public int getUpserts() { return upserts; }
+
+    public int getTombstones() { return tombstones; }
+
+    public byte[] getBody() { return body; }
+
+    public String getBoundary() { return boundary; }
+
+    public String getEtag() { return "\"d-" + etag + "\""; }
+}
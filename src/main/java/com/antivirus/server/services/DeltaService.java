@@ -0,0 +1,139 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Release;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.repository.ReleaseEntryJdbcRepository;
+import com.antivirus.server.repository.ReleaseRepository;
+import com.antivirus.server.util.HashUtil;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Инкрементальные обновления между релизами: записи, которых нет в релизе клиента в той же версии,
+ * плюс tombstone для исчезнувших. Считается по release_entries, поэтому точна при любом числе правок.
+ * Большинство клиентов стоят на одних и тех же релизах, готовые дельты кэшируются до следующей публикации.
+ * Дельта — в формате v1: запись, получившая маску, для клиента удаляется (tombstone), записи с маской
+ * приходят только в полном бандле v2.
+ */
+@Service
+public class DeltaService {
+
+    private static final int MAX_CACHED = 64;
+    private static final Set<Release.Status> DIFFABLE =
+            EnumSet.of(Release.Status.READY, Release.Status.PUBLISHED, Release.Status.RETIRED);
+
+    private final ReleaseSnapshotService snapshots;
+    private final ReleaseRepository releases;
+    private final ReleaseEntryJdbcRepository entries;
+    private final SignatureService service;
+    private final ManifestSigningService signing;
+
+    /** from -> дельта до опубликованного релиза */
+    private final Map<Long, DeltaBundle> cache = new ConcurrentHashMap<>();
+
+    public DeltaService(ReleaseSnapshotService snapshots,
+                        ReleaseRepository releases,
+                        ReleaseEntryJdbcRepository entries,
+                        SignatureService service,
+                        ManifestSigningService signing) {
+        this.snapshots = snapshots;
+        this.releases = releases;
+        this.entries = entries;
+        this.service = service;
+        this.signing = signing;
+    }
+
+    /** null — от такого релиза дельту не построить (неизвестен или уже вычищен), нужен полный бандл */
+    public DeltaBundle since(long from, ReleaseSnapshot current) {
+        long to = current.getNumber();
+        if (from == to) return new DeltaBundle(from, to, 0, 0, new byte[0], "", "");
+        DeltaBundle c = cache.get(from);
+        if (c != null && c.getTo() == to) return c;
+
+        if (releases.findById(from).map(r -> !DIFFABLE.contains(r.getStatus()) || !sameKey(r, current)).orElse(true)) {
+            return null;
+        }
+        DeltaBundle built = build(from, to, current.getHeader().merkleRoot);
+        if (cache.size() >= MAX_CACHED) cache.clear();
+        cache.put(from, built);
+        return built;
+    }
+
+    /**
+     * Переподпись после смены ключа не меняет version записей (ResignJobService), и новые подписи в дельту
+     * не попали бы. Поэтому в классический релиз (GUID:signature) из релиза старого ключа можно перейти
+     * только полным бандлом.
+     */
+    private boolean sameKey(Release from, ReleaseSnapshot current) {
+        if (current.getHeader().merkleRoot != null) return true;
+        return signing.isCurrent(signing.restoreHeader(from.getNumber(), from.getReleaseDate(), from.getCount(),
+                from.getHeaderSignature(), from.getSignatureAlgorithm(), from.getMerkleRoot()));
+    }
+
+    @EventListener
+    public void onReleasePublished(ReleasePublishedEvent event) {
+        cache.clear();
+    }
+
+    /**
+     * merkleRoot != null — целевой релиз в режиме Меркла: вместо подписей записей — корень,
+     * который клиент сверяет, пересчитав дерево по своей базе после применения дельты.
+     */
+    private DeltaBundle build(long from, long to, String merkleRoot) {
+        List<Signature> changed = entries.findChanged(from, to);
+        List<Signature> upserts = changed.stream().filter(s -> !SignatureBytes.isMasked(s)).toList();
+        List<UUID> tombstones = new ArrayList<>(entries.findRemoved(from, to));
+        changed.stream().filter(SignatureBytes::isMasked).forEach(s -> tombstones.add(s.getId()));
+
+        // манифест подписывается по мере записи строк — без второй копии текста
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        java.security.Signature signer = signing.newSigner();
+        line(manifest, signer, String.valueOf(upserts.size()));
+        if (merkleRoot == null) {
+            service.guidWithSignatureBase64(upserts).forEach(l -> line(manifest, signer, l));
+        } else {
+            upserts.forEach(s -> line(manifest, signer, s.getId().toString()));
+        }
+        line(manifest, signer, "DELETED:" + tombstones.size());
+        tombstones.forEach(id -> line(manifest, signer, id.toString()));
+        line(manifest, signer, "RANGE:" + from + "/" + to);
+        if (merkleRoot != null) line(manifest, signer, "MERKLE_ROOT:" + merkleRoot);
+        String manifestSigB64;
+        try {
+            manifestSigB64 = Base64.getEncoder().encodeToString(signer.sign());
+        } catch (SignatureException e) {
+            throw new IllegalStateException("Cannot sign delta manifest", e);
+        }
+        manifest.writeBytes(("MANIFEST_SIG:" + manifestSigB64 + "\n").getBytes(StandardCharsets.UTF_8));
+        byte[] manifestBytes = manifest.toByteArray();
+
+        byte[] dataBytes = SignatureBytes.buildDataBin(upserts);
+
+        String etag = HashUtil.sha256Hex(manifestBytes, dataBytes);
+        String boundary = "----AVDELTA-" + etag.substring(0, 32);
+        return new DeltaBundle(from, to, upserts.size(), tombstones.size(),
+                MultipartBundle.assemble(boundary, manifestBytes, dataBytes), boundary, etag);
+    }
+
+    private static void line(ByteArrayOutputStream out, java.security.Signature signer, String text) {
+        byte[] bytes = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            signer.update(bytes);
+        } catch (SignatureException e) {
+            throw new IllegalStateException(e);
+        }
+        out.writeBytes(bytes);
+    }
+}
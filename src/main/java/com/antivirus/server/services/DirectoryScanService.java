@@ -0,0 +1,173 @@
+package com.antivirus.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Пакетная проверка локального дерева каталогов текущей сборкой ScanEngine.
+ * Сначала читаются заголовки: классы JAR/ZIP и class-файлы уходят в JarScanner (сигнатуры JAVA), а сам файл
+ * отображается в память (FileChannel.map) для PE-сигнатур и читается только до ScanEngine.getReach() — дальше ни одна
+ * применимая сигнатура не смотрит (у не-PE файла без сигнатур по всему файлу это 0, файл не отображается).
+ * Большие файлы проходятся окнами по av.scan.map-chunk-bytes
+ * с перекрытием на длину образца, в куче файл не держится. Файлы проверяются параллельно на своём
+ * ForkJoinPool, результаты пишутся NDJSON по мере готовности (порядок строк не совпадает с обходом).
+ */
+@Service
+public class DirectoryScanService {
+
+    /** Строка NDJSON: один файл; incomplete — в архиве есть непроверенные классы или вложенные архивы (skipped) */
+    public record FileResult(String path, long size, long scannedBytes, List<ScanEngine.Match> matches,
+                             boolean incomplete, int skipped, String error) {}
+
+    private final ScanService scanService;
+    private final JarScanner jarScanner;
+    private final ObjectMapper mapper;
+    private final List<Path> allowedRoots;
+    private final long chunkBytes;
+    private final ForkJoinPool pool;
+
+    public DirectoryScanService(ScanService scanService,
+                                JarScanner jarScanner,
+                                ObjectMapper mapper,
+                                @Value("${av.scan.allowed-roots:}") String allowedRoots,
+                                @Value("${av.scan.map-chunk-bytes:1073741824}") long chunkBytes,
+                                @Value("${av.scan.dir-parallelism:0}") int parallelism) {
+        this.scanService = scanService;
+        this.jarScanner = jarScanner;
+        this.mapper = mapper;
+        this.allowedRoots = Arrays.stream(allowedRoots.split(","))
+                .map(String::trim).filter(s -> !s.isEmpty())
+                .map(s -> realPath(Path.of(s)))
+                .toList();
+        this.chunkBytes = Math.min(chunkBytes, 1L << 30); // + перекрытие должно влезть в один map()
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    private static Path realPath(Path p) {
+        try {
+            return p.toRealPath();
+        } catch (IOException e) {
+            return p.toAbsolutePath().normalize();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /** Каталог должен лежать внутри одного из av.scan.allowed-roots; иначе IllegalArgumentException */
+    public Path resolve(String dir) throws IOException {
+        Path p = Path.of(dir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(p)) throw new IllegalArgumentException("Not a directory: " + dir);
+        Path real = p.toRealPath();
+        if (allowedRoots.stream().noneMatch(real::startsWith)) {
+            throw new IllegalArgumentException("Directory is outside av.scan.allowed-roots: " + dir);
+        }
+        return real;
+    }
+
+    /**
+     * Обойти дерево и записать по строке на файл; возвращает число проверенных файлов.
+     * firstOnly — в архивах останавливаться на первом классе с совпадением.
+     */
+    public long scan(Path root, OutputStream out, boolean firstOnly) throws IOException {
+        ScanEngine engine = scanService.engine(); // вся задача — по одной сборке
+        ExecutorCompletionService<FileResult> done = new ExecutorCompletionService<>(pool);
+        int maxInFlight = pool.getParallelism() * 4;
+        int inFlight = 0;
+        long files = 0;
+
+        try (Stream<Path> walk = Files.walk(root)) {
+            // ссылки не разыменовываем — иначе можно выйти за пределы разрешённого корня
+            Iterator<Path> it = walk.filter(f -> Files.isRegularFile(f, LinkOption.NOFOLLOW_LINKS)).iterator();
+            while (it.hasNext()) {
+                Path file = it.next();
+                done.submit(() -> scanFile(engine, file, firstOnly));
+                inFlight++;
+                files++;
+                if (inFlight >= maxInFlight) {
+                    writeLine(out, take(done));
+                    inFlight--;
+                }
+            }
+        }
+        for (; inFlight > 0; inFlight--) writeLine(out, take(done));
+        return files;
+    }
+
+    FileResult scanFile(ScanEngine engine, Path file, boolean firstOnly) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            long size = ch.size();
+            // по заголовкам решаем, есть ли классы и докуда читать файл для PE-сигнатур
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, PeHeader.HEAD_BYTES));
+            while (head.hasRemaining() && ch.read(head, head.position()) > 0) { }
+            head.flip();
+            Map<UUID, ScanEngine.Match> found = new LinkedHashMap<>();
+            JarScanner.Result classes = null;
+            if (JarScanner.isZip(head)) {
+                classes = jarScanner.scan(
+                        new BufferedInputStream(Channels.newInputStream(ch.position(0)), 64 * 1024), engine, firstOnly);
+            } else if (ScanEngine.isClassFile(head)) {
+                classes = jarScanner.scanClassFile(Channels.newInputStream(ch.position(0)), engine);
+            }
+            if (classes != null) for (ScanEngine.Match m : classes.matches()) found.putIfAbsent(m.id(), m);
+
+            PeHeader pe = PeHeader.parse(head, size);
+            long limit = firstOnly && !found.isEmpty() ? 0 : Math.min(size, engine.getReach(pe));
+            int overlap = Math.max(0, engine.getMaxPatternLength() - 1);
+            for (long from = 0; from < limit; from += chunkBytes) {
+                long len = Math.min(limit - from + overlap, chunkBytes + overlap);
+                len = Math.min(len, size - from);
+                MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, from, len);
+                for (ScanEngine.Match m : engine.scan(window, from, pe)) found.putIfAbsent(m.id(), m);
+            }
+            return new FileResult(file.toString(), size, classes != null ? size : limit, new ArrayList<>(found.values()),
+                    classes != null && classes.incomplete(), classes == null ? 0 : classes.skipped(), null);
+        } catch (IOException | RuntimeException e) {
+            return new FileResult(file.toString(), -1, 0, List.of(), true, 0, e.toString());
+        }
+    }
+
+    private static FileResult take(ExecutorCompletionService<FileResult> done) throws IOException {
+        try {
+            return done.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Directory scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Directory scan failed", e.getCause());
+        }
+    }
+
+    private void writeLine(OutputStream out, FileResult r) throws IOException {
+        out.write(mapper.writeValueAsBytes(r));
+        out.write('\n');
+        out.flush();
+    }
+}
@@ -0,0 +1,10 @@
+package com.antivirus.server.services;
+
+/** Поля сигнатуры не проходят SignatureValidator — запись не сохраняется */
+public class InvalidSignatureException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidSignatureException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,129 @@
+package com.antivirus.server.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Потоковая проверка JAR/ZIP сигнатурами типа JAVA: архив читается ZipInputStream запись за записью,
+ * каждый .class распаковывается в один переиспользуемый буфер и проверяется ScanEngine.scanClass.
+ * Вложенные архивы (.jar/.war/.ear/.zip) разбираются из того же потока до глубины av.scan.jar.max-depth.
+ * Память на проверку — буфер под самый большой класс (не больше av.scan.jar.max-class-bytes),
+ * независимо от размера архива.
+ */
+@Component
+public class JarScanner {
+
+    /** skipped — классы и архивы, не проверенные из-за ограничений; такой вердикт неполный */
+    public record Result(List<ScanEngine.Match> matches, int classes, int archives, int skipped) {
+        public boolean incomplete() { return skipped > 0; }
+    }
+
+    private final int maxDepth;
+    private final int maxClassBytes;
+
+    public JarScanner(@Value("${av.scan.jar.max-depth:3}") int maxDepth,
+                      @Value("${av.scan.jar.max-class-bytes:16777216}") int maxClassBytes) {
+        this.maxDepth = maxDepth;
+        this.maxClassBytes = maxClassBytes;
+    }
+
+    public static boolean isZip(ByteBuffer head) {
+        return head.remaining() >= 4 && head.get(head.position()) == 'P' && head.get(head.position() + 1) == 'K'
+                && head.get(head.position() + 2) == 3 && head.get(head.position() + 3) == 4;
+    }
+
+    /** firstOnly — остановиться на первом классе, где что-то нашлось */
+    public Result scan(InputStream in, ScanEngine engine, boolean firstOnly) throws IOException {
+        State st = new State(engine, firstOnly, Math.min(64 * 1024, maxClassBytes));
+        if (!engine.hasJavaSignatures()) return st.result();
+        walk(new ZipInputStream(new Unclosable(in)), "", 0, st);
+        return st.result();
+    }
+
+    /** Отдельный .class (не в архиве) — тот же буфер и ограничение размера */
+    public Result scanClassFile(InputStream in, ScanEngine engine) throws IOException {
+        State st = new State(engine, false, Math.min(64 * 1024, maxClassBytes));
+        if (engine.hasJavaSignatures()) scanClass(in, null, st);
+        return st.result();
+    }
+
+    private void walk(ZipInputStream zip, String prefix, int depth, State st) throws IOException {
+        try (zip) {
+            ZipEntry e;
+            while (!st.done() && (e = zip.getNextEntry()) != null) {
+                if (e.isDirectory()) continue;
+                String name = e.getName();
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (lower.endsWith(".class")) {
+                    scanClass(zip, prefix + name, st);
+                } else if (isArchive(lower)) {
+                    st.archives++;
+                    if (depth + 1 > maxDepth) st.skipped++;
+                    else walk(new ZipInputStream(new Unclosable(zip)), prefix + name + "!/", depth + 1, st);
+                }
+            }
+        }
+    }
+
+    private void scanClass(InputStream in, String path, State st) throws IOException {
+        int n = 0;
+        while (true) {
+            if (n == st.buf.length) {
+                if (n >= maxClassBytes) {
+                    if (in.read() < 0) break; // класс ровно в maxClassBytes — прочитан целиком
+                    st.skipped++;
+                    return; // остаток записи ZipInputStream пропустит сам на getNextEntry
+                }
+                st.buf = Arrays.copyOf(st.buf, (int) Math.min(maxClassBytes, 2L * n));
+            }
+            int r = in.read(st.buf, n, st.buf.length - n);
+            if (r < 0) break;
+            n += r;
+        }
+        st.classes++;
+        for (ScanEngine.Match m : st.engine.scanClass(ByteBuffer.wrap(st.buf, 0, n))) {
+            st.matches.add(path == null ? m : m.inEntry(path));
+        }
+    }
+
+    private static boolean isArchive(String lower) {
+        return lower.endsWith(".jar") || lower.endsWith(".war") || lower.endsWith(".ear") || lower.endsWith(".zip");
+    }
+
+    private static final class State {
+        final ScanEngine engine;
+        final boolean firstOnly;
+        final List<ScanEngine.Match> matches = new ArrayList<>();
+        byte[] buf;
+        int classes, archives, skipped;
+
+        State(ScanEngine engine, boolean firstOnly, int initialBuffer) {
+            this.engine = engine;
+            this.firstOnly = firstOnly;
+            this.buf = new byte[initialBuffer];
+        }
+
+        boolean done() { return firstOnly && !matches.isEmpty(); }
+
+        Result result() { return new Result(matches, classes, archives, skipped); }
+    }
+
+    /** Закрытие вложенного ZipInputStream освобождает его Inflater, но не трогает внешний поток */
+    private static final class Unclosable extends FilterInputStream {
+        Unclosable(InputStream in) { super(in); }
+
+        @Override
+        public void close() { }
+    }
+}
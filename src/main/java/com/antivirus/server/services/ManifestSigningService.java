@@ -1,73 +1,192 @@
 package com.antivirus.server.services;
 
 import com.antivirus.server.dto.ManifestHeaderDto;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.util.HashUtil;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.security.*;
 import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
 import java.time.OffsetDateTime;
 import java.util.Base64;
 
+/**
+ * Подпись манифеста и записей.
+ * Ключ и сертификат читаются из keystore один раз и перечитываются, только когда файл изменился
+ * (mtime проверяется не чаще раза в av.signing.reload-check-ms). Экземпляры java.security.Signature
+ * переиспользуются per-thread — на горячем пути остаётся только сама криптография.
+ * Алгоритм — av.signing.algorithm: SHA256withRSA (по умолчанию, для существующих клиентов), Ed25519,
+ * SHA256withECDSA (только P-256); тип ключа в keystore должен ему соответствовать. Алгоритм указывается
+ * в заголовке манифеста, чтобы клиент знал, чем проверять, и, если он не по умолчанию, входит в подписанные
+ * данные заголовка — подменить его, не сломав подпись, нельзя.
+ */
 @Service
 public class ManifestSigningService {
 
+    /** Алгоритм релизов, собранных до появления настройки */
+    public static final String DEFAULT_ALGORITHM = "SHA256withRSA";
+
+    private final String algorithm;
     private final String magicNumber;
-    private final String keyStorePath;
+    private final Path keyStorePath;
     private final String keyStorePassword;
     private final String keyStoreType;
     private final String keyAlias;
+    private final long reloadCheckMs;
+
+    /** Загруженный ключевой материал; generation меняется при каждой перезагрузке keystore */
+    private record KeyMaterial(PrivateKey privateKey, X509Certificate certificate, String keyId,
+                               FileTime modified, long generation) {}
+
+    /** Signature + поколение ключа, которым он инициализирован */
+    private static final class Engine {
+        final java.security.Signature sig;
+        long generation = -1;
+
+        Engine(String algorithm) {
+            try {
+                sig = java.security.Signature.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private volatile KeyMaterial keys;
+    private volatile long lastCheck;
+    private long generations;
+
+    private final ThreadLocal<Engine> signers;
+    private final ThreadLocal<Engine> verifiers;
 
     public ManifestSigningService(
             @Value("${av.magic}") String magicNumber,
-            @Value("${server.ssl.key-store}") String keyStorePath,
-            @Value("${server.ssl.key-store-password}") String keyStorePassword,
-            @Value("${server.ssl.key-store-type}") String keyStoreType,
-            @Value("${server.ssl.key-alias}") String keyAlias
+            @Value("${av.signing.key-store:${server.ssl.key-store}}") String keyStorePath,
+            @Value("${av.signing.key-store-password:${server.ssl.key-store-password}}") String keyStorePassword,
+            @Value("${av.signing.key-store-type:${server.ssl.key-store-type}}") String keyStoreType,
+            @Value("${av.signing.key-alias:${server.ssl.key-alias}}") String keyAlias,
+            @Value("${av.signing.algorithm:" + DEFAULT_ALGORITHM + "}") String algorithm,
+            @Value("${av.signing.reload-check-ms:5000}") long reloadCheckMs
     ) {
+        keyAlgorithm(algorithm);
+        try {
+            java.security.Signature.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported av.signing.algorithm: " + algorithm, e);
+        }
+        this.algorithm = algorithm;
+        this.signers = ThreadLocal.withInitial(() -> new Engine(algorithm));
+        this.verifiers = ThreadLocal.withInitial(() -> new Engine(algorithm));
         this.magicNumber = magicNumber;
-        this.keyStorePath = keyStorePath;
+        this.keyStorePath = Path.of(keyStorePath);
         this.keyStorePassword = keyStorePassword;
         this.keyStoreType = keyStoreType;
         this.keyAlias = keyAlias;
+        this.reloadCheckMs = reloadCheckMs;
     }
 
     public String getMagicNumber() { return magicNumber; }
 
+    /** Алгоритм подписи — то же имя, что у java.security.Signature */
+    public String getAlgorithm() { return algorithm; }
+
+
+    public ManifestHeaderDto buildSignedHeader(long releaseNumber, OffsetDateTime releaseDate, long count) {
+        return buildSignedHeader(releaseNumber, releaseDate, count, null);
+    }
+
+    /** merkleRoot != null — режим Меркла: корень дописывается в подписываемые данные заголовка */
+    public ManifestHeaderDto buildSignedHeader(long releaseNumber, OffsetDateTime releaseDate, long count,
+                                               String merkleRoot) {
+        return buildSignedHeader(releaseNumber, releaseDate, count, merkleRoot, null);
+    }
 
-    public ManifestHeaderDto buildSignedHeader(OffsetDateTime releaseDate, long count) {
+    /** partition != null — заголовок раздела: тип дописывается в подписываемые данные */
+    public ManifestHeaderDto buildSignedHeader(long releaseNumber, OffsetDateTime releaseDate, long count,
+                                               String merkleRoot, Signature.ObjectType partition) {
         try {
-            String data = magicNumber + "|" + releaseDate.toEpochSecond() + "|" + count;
-            String signatureB64 = signString(data);
-            return new ManifestHeaderDto(magicNumber, releaseDate, count, signatureB64);
+            String signatureB64 = signString(headerData(releaseDate, count, merkleRoot, partition));
+            ManifestHeaderDto header = new ManifestHeaderDto(magicNumber, releaseNumber, releaseDate, count,
+                    signatureB64, algorithm, merkleRoot);
+            header.objectType = partition == null ? null : partition.name();
+            return header;
         } catch (Exception e) {
             throw new RuntimeException("Cannot build signed header", e);
         }
     }
 
+    /** Заголовок с уже сохранённой подписью (релиз из БД); algorithm == null — релиз до появления настройки */
+    public ManifestHeaderDto restoreHeader(long releaseNumber, OffsetDateTime releaseDate, long count,
+                                           String signatureB64, String algorithm, String merkleRoot) {
+        return restoreHeader(releaseNumber, releaseDate, count, signatureB64, algorithm, merkleRoot, null);
+    }
+
+    /** То же для заголовка раздела */
+    public ManifestHeaderDto restoreHeader(long releaseNumber, OffsetDateTime releaseDate, long count,
+                                           String signatureB64, String algorithm, String merkleRoot,
+                                           Signature.ObjectType partition) {
+        ManifestHeaderDto header = new ManifestHeaderDto(magicNumber, releaseNumber, releaseDate, count, signatureB64,
+                algorithm == null ? DEFAULT_ALGORITHM : algorithm, merkleRoot);
+        header.objectType = partition == null ? null : partition.name();
+        return header;
+    }
+
+    /**
+     * Заголовок подписан текущими алгоритмом и ключом. Иначе (релиз собран до смены ключа) клиент не проверит его
+     * сертификатом, который сейчас отдаёт /manifest/cert.
+     */
+    public boolean isCurrent(ManifestHeaderDto header) {
+        if (!algorithm.equals(header.signatureAlgorithm) || header.headerSignature == null) return false;
+        Signature.ObjectType partition = header.objectType == null ? null : Signature.ObjectType.valueOf(header.objectType);
+        String data = headerData(header.releaseDate, header.count, header.merkleRoot, partition);
+        try {
+            return verify(data.getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(header.headerSignature));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** magic|epoch|count[|merkleRoot][|partition][|algorithm] — алгоритм только если он не DEFAULT_ALGORITHM */
+    String headerData(OffsetDateTime releaseDate, long count, String merkleRoot, Signature.ObjectType partition) {
+        StringBuilder data = new StringBuilder(magicNumber).append('|').append(releaseDate.toEpochSecond())
+                .append('|').append(count);
+        if (merkleRoot != null) data.append('|').append(merkleRoot);
+        if (partition != null) data.append('|').append(partition);
+        if (!DEFAULT_ALGORITHM.equals(algorithm)) data.append('|').append(algorithm);
+        return data.toString();
+    }
+
     public X509Certificate getServerCertificate() {
         try {
-            KeyStore ks = KeyStore.getInstance(keyStoreType);
-            try (FileInputStream fis = new FileInputStream(keyStorePath)) {
-                ks.load(fis, keyStorePassword.toCharArray());
-            }
-            return (X509Certificate) ks.getCertificate(keyAlias);
+            return keys().certificate();
         } catch (Exception e) {
             throw new RuntimeException("Cannot load server certificate", e);
         }
     }
 
+    /** SHA-256 отпечаток сертификата подписи — меняется при смене ключа */
+    public String getKeyId() {
+        return keys().keyId();
+    }
+
+    /** Алгоритм и ключ, которыми сейчас подписываются записи: после смены любого из них нужна переподпись */
+    public String getSigningKey() {
+        return algorithm + ":" + getKeyId();
+    }
+
     public PrivateKey loadPrivateKeyForSigning() {
         try {
-            KeyStore ks = KeyStore.getInstance(keyStoreType);
-            try (FileInputStream fis = new FileInputStream(keyStorePath)) {
-                ks.load(fis, keyStorePassword.toCharArray());
-            }
-            Key key = ks.getKey(keyAlias, keyStorePassword.toCharArray());
-            if (key instanceof PrivateKey pk) return pk;
-            throw new IllegalStateException("Private key not found for alias: " + keyAlias);
+            return keys().privateKey();
         } catch (Exception e) {
             throw new RuntimeException("Cannot load private key", e);
         }
@@ -81,13 +200,119 @@ public class ManifestSigningService {
 
     public String signString(String text) {
         try {
-            var pk = loadPrivateKeyForSigning();
-            var sig = Signature.getInstance("SHA256withRSA");
-            sig.initSign(pk);
-            sig.update(text.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(sig.sign());
+            return Base64.getEncoder().encodeToString(sign(text.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
             throw new RuntimeException("Cannot sign text", e);
         }
     }
+
+    /**
+     * Отдельный Signature, инициализированный текущим ключом, — для подписи данных, которые пишутся
+     * частями (update по мере формирования). Для подписи готового массива — sign/signString.
+     */
+    public java.security.Signature newSigner() {
+        try {
+            var sig = java.security.Signature.getInstance(algorithm);
+            sig.initSign(keys().privateKey());
+            return sig;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Cannot init signer", e);
+        }
+    }
+
+    /** ЭЦП произвольных байт (бинарный образ записи и т.п.) */
+    public byte[] sign(byte[] data) {
+        KeyMaterial k = keys();
+        Engine e = signers.get();
+        try {
+            if (e.generation != k.generation()) {
+                e.sig.initSign(k.privateKey());
+                e.generation = k.generation();
+            }
+            e.sig.update(data);
+            return e.sig.sign(); // sign() сбрасывает Signature в состояние после initSign
+        } catch (GeneralSecurityException ex) {
+            e.generation = -1;
+            throw new RuntimeException("Cannot sign data", ex);
+        }
+    }
+
+    /** Проверка ЭЦП открытым ключом сертификата сервера */
+    public boolean verify(byte[] data, byte[] signature) {
+        KeyMaterial k = keys();
+        Engine e = verifiers.get();
+        try {
+            if (e.generation != k.generation()) {
+                e.sig.initVerify(k.certificate().getPublicKey());
+                e.generation = k.generation();
+            }
+            e.sig.update(data);
+            return e.sig.verify(signature);
+        } catch (GeneralSecurityException ex) {
+            e.generation = -1;
+            return false;
+        }
+    }
+
+    private KeyMaterial keys() {
+        KeyMaterial k = keys;
+        long now = System.currentTimeMillis();
+        if (k != null && now - lastCheck < reloadCheckMs) return k;
+        synchronized (this) {
+            k = keys;
+            if (k != null && now - lastCheck < reloadCheckMs) return k;
+            try {
+                FileTime modified = Files.getLastModifiedTime(keyStorePath);
+                if (k == null || !modified.equals(k.modified())) {
+                    k = load(modified);
+                    keys = k;
+                }
+            } catch (Exception e) {
+                // keystore временно недоступен (перевыпуск) — работаем на загруженном ключе
+                if (k == null) throw new RuntimeException("Cannot load keystore " + keyStorePath, e);
+            }
+            lastCheck = now;
+            return k;
+        }
+    }
+
+    /** Тип ключа (PrivateKey.getAlgorithm) под алгоритм подписи */
+    private static String keyAlgorithm(String algorithm) {
+        if (algorithm.endsWith("withRSA")) return "RSA";
+        if (algorithm.equals("SHA256withECDSA")) return "EC";
+        if (algorithm.equals("Ed25519") || algorithm.equals("EdDSA")) return "EdDSA";
+        throw new IllegalArgumentException("Unsupported av.signing.algorithm: " + algorithm);
+    }
+
+    private static boolean isP256(ECParameterSpec spec) throws GeneralSecurityException {
+        AlgorithmParameters p = AlgorithmParameters.getInstance("EC");
+        p.init(new ECGenParameterSpec("secp256r1"));
+        ECParameterSpec p256 = p.getParameterSpec(ECParameterSpec.class);
+        return spec != null && spec.getCurve().equals(p256.getCurve()) && spec.getGenerator().equals(p256.getGenerator())
+                && spec.getOrder().equals(p256.getOrder()) && spec.getCofactor() == p256.getCofactor();
+    }
+
+    private KeyMaterial load(FileTime modified) throws Exception {
+        KeyStore ks = KeyStore.getInstance(keyStoreType);
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            ks.load(in, keyStorePassword.toCharArray());
+        }
+        Key key = ks.getKey(keyAlias, keyStorePassword.toCharArray());
+        if (!(key instanceof PrivateKey pk)) {
+            throw new IllegalStateException("Private key not found for alias: " + keyAlias);
+        }
+        String expected = keyAlgorithm(algorithm);
+        if (!expected.equals(pk.getAlgorithm()) && !(expected.equals("EdDSA") && pk.getAlgorithm().equals("Ed25519"))) {
+            throw new IllegalStateException("Key " + keyAlias + " is " + pk.getAlgorithm() + ", " + algorithm
+                    + " needs " + expected);
+        }
+        X509Certificate cert = (X509Certificate) ks.getCertificate(keyAlias);
+        if (expected.equals("EC")) {
+            if (!(pk instanceof ECPrivateKey ec) || !isP256(ec.getParams())
+                    || !(cert.getPublicKey() instanceof ECPublicKey pub) || !isP256(pub.getParams())) {
+                throw new IllegalStateException("Key " + keyAlias + " is not on secp256r1, " + algorithm + " needs P-256");
+            }
+        }
+        return new KeyMaterial(pk, cert, HashUtil.sha256Hex(cert.getEncoded()), modified, ++generations);
+    }
 }
@@ -0,0 +1,149 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Дерево Меркла по записям релиза (SHA-256). Лист — H(0x00 || id (16 байт) || запись data.bin),
+ * узел — H(0x01 || левый || правый); непарный последний узел уровня поднимается выше без изменений.
+ * Листья идут в порядке релиза (ordinal, т.е. по id), поэтому клиент может сам пересчитать корень
+ * после дельты. Подписывается только корень; запись проверяется путём из log2(n) хешей.
+ * Уровни хранятся плоскими массивами по 32 байта на узел — около 64 байт на запись.
+ */
+public final class MerkleTree {
+
+    public static final int HASH = 32;
+
+    private final long[] idHi;
+    private final long[] idLo;
+    /** levels[0] — листья, последний — корень */
+    private final byte[][] levels;
+    /** id листьев отсортированы беззнаково (порядок UUID в PostgreSQL) — поиск двоичный */
+    private final boolean sorted;
+
+    private MerkleTree(long[] idHi, long[] idLo, byte[][] levels) {
+        this.idHi = idHi;
+        this.idLo = idLo;
+        this.levels = levels;
+        boolean s = true;
+        for (int i = 1; i < idHi.length && s; i++) s = compare(idHi[i - 1], idLo[i - 1], idHi[i], idLo[i]) < 0;
+        this.sorted = s;
+    }
+
+    public static MerkleTree build(List<Signature> items) {
+        int n = items.size();
+        long[] hi = new long[n], lo = new long[n];
+        byte[] leaves = new byte[n * HASH];
+        MessageDigest md = sha256();
+        for (int i = 0; i < n; i++) {
+            Signature s = items.get(i);
+            hi[i] = s.getId().getMostSignificantBits();
+            lo[i] = s.getId().getLeastSignificantBits();
+            System.arraycopy(leaf(md, s.getId(), SignatureBytes.recordBytes(s)), 0, leaves, i * HASH, HASH);
+        }
+        List<byte[]> levels = new ArrayList<>();
+        levels.add(leaves);
+        byte[] level = leaves;
+        while (level.length > HASH) {
+            int count = level.length / HASH;
+            byte[] up = new byte[(count + 1) / 2 * HASH];
+            for (int i = 0; i + 1 < count; i += 2) {
+                md.update((byte) 1);
+                md.update(level, i * HASH, 2 * HASH);
+                System.arraycopy(md.digest(), 0, up, i / 2 * HASH, HASH);
+            }
+            if (count % 2 == 1) System.arraycopy(level, (count - 1) * HASH, up, (count - 1) / 2 * HASH, HASH);
+            levels.add(up);
+            level = up;
+        }
+        return new MerkleTree(hi, lo, levels.toArray(byte[][]::new));
+    }
+
+    public int size() { return idHi.length; }
+
+    /** Корень; у пустого релиза — H() от пустой строки */
+    public byte[] root() {
+        if (idHi.length == 0) return sha256().digest();
+        return levels[levels.length - 1].clone();
+    }
+
+    /** Номер листа записи или -1, если её нет в релизе */
+    public int indexOf(UUID id) {
+        long h = id.getMostSignificantBits(), l = id.getLeastSignificantBits();
+        if (!sorted) {
+            for (int i = 0; i < idHi.length; i++) if (idHi[i] == h && idLo[i] == l) return i;
+            return -1;
+        }
+        int a = 0, b = idHi.length - 1;
+        while (a <= b) {
+            int m = (a + b) >>> 1;
+            int c = compare(idHi[m], idLo[m], h, l);
+            if (c == 0) return m;
+            if (c < 0) a = m + 1;
+            else b = m - 1;
+        }
+        return -1;
+    }
+
+    public byte[] leaf(int index) {
+        return Arrays.copyOfRange(levels[0], index * HASH, (index + 1) * HASH);
+    }
+
+    /** Соседи по пути от листа к корню; на уровнях, где узел непарный, соседа нет — шаг пропускается */
+    public List<byte[]> proof(int index) {
+        List<byte[]> path = new ArrayList<>();
+        for (int d = 0; d < levels.length - 1; d++) {
+            int count = levels[d].length / HASH;
+            int sibling = index ^ 1;
+            if (sibling < count) path.add(Arrays.copyOfRange(levels[d], sibling * HASH, (sibling + 1) * HASH));
+            index >>>= 1;
+        }
+        return path;
+    }
+
+    /** Проверка пути — то же, что делает клиент */
+    public static boolean verify(byte[] leaf, int index, int count, List<byte[]> path, byte[] root) {
+        MessageDigest md = sha256();
+        byte[] h = leaf;
+        int p = 0;
+        for (; count > 1; count = (count + 1) / 2, index >>>= 1) {
+            int sibling = index ^ 1;
+            if (sibling >= count) continue;
+            if (p == path.size()) return false;
+            byte[] other = path.get(p++);
+            md.update((byte) 1);
+            md.update(sibling < index ? other : h);
+            md.update(sibling < index ? h : other);
+            h = md.digest();
+        }
+        return p == path.size() && MessageDigest.isEqual(h, root);
+    }
+
+    static byte[] leaf(MessageDigest md, UUID id, byte[] record) {
+        md.update((byte) 0);
+        md.update(ByteBuffer.allocate(16).putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits()).array());
+        md.update(record);
+        return md.digest();
+    }
+
+    private static int compare(long h1, long l1, long h2, long l2) {
+        int c = Long.compareUnsigned(h1, h2);
+        return c != 0 ? c : Long.compareUnsigned(l1, l2);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
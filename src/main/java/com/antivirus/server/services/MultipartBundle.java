@@ -0,0 +1,46 @@
+package com.antivirus.server.services;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Разметка multipart/mixed для бандла (manifest.txt + data.bin).
+ * Общая для готового снимка и потоковой выдачи, чтобы байты совпадали.
+ */
+public final class MultipartBundle {
+
+    private MultipartBundle() {}
+
+    public static byte[] manifestPartHeader(String boundary) {
+        return ("--" + boundary + "\r\n" +
+                "Content-Type: text/plain; charset=utf-8\r\n" +
+                "Content-Disposition: attachment; filename=manifest.txt\r\n\r\n"
+        ).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] dataPartHeader(String boundary) {
+        return ("\r\n--" + boundary + "\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "Content-Disposition: attachment; filename=data.bin\r\n\r\n"
+        ).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] end(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Собрать всё тело целиком (для кэшируемых снимков и дельт) */
+    public static byte[] assemble(String boundary, byte[] manifest, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(manifest.length + data.length + 512);
+        out.writeBytes(manifestPartHeader(boundary));
+        out.writeBytes(manifest);
+        out.writeBytes(dataPartHeader(boundary));
+        out.writeBytes(data);
+        out.writeBytes(end(boundary));
+        return out.toByteArray();
+    }
+
+    public static String contentType(String boundary) {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+}
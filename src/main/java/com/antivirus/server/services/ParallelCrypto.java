@@ -0,0 +1,55 @@
+package com.antivirus.server.services;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Раскладывает порцию записей на cryptoExecutor: по одному куску на ядро.
+ * Для маленьких порций считает в текущем потоке — пул не нужен.
+ */
+@Component
+public class ParallelCrypto {
+
+    private static final int MIN_SLICE = 64;
+
+    private final TaskExecutor executor;
+    private final int parallelism;
+
+    public ParallelCrypto(@Qualifier("cryptoExecutor") TaskExecutor executor) {
+        this.executor = executor;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Результаты в том же порядке, что и items */
+    @SuppressWarnings("unchecked")
+    public <T, R> List<R> map(List<T> items, Function<T, R> fn) {
+        int n = items.size();
+        int slices = Math.min(parallelism, (n + MIN_SLICE - 1) / MIN_SLICE);
+        if (slices <= 1) return items.stream().map(fn).toList();
+
+        Object[] out = new Object[n];
+        int step = (n + slices - 1) / slices;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(slices);
+        for (int from = 0; from < n; from += step) {
+            int lo = from, hi = Math.min(n, from + step);
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = lo; i < hi; i++) out[i] = fn.apply(items.get(i));
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return (List<R>) Arrays.asList(out);
+    }
+}
@@ -0,0 +1,78 @@
+package com.antivirus.server.services;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор заголовков PE (MZ, PE\0\0, COFF, таблица секций) по первым килобайтам файла.
+ * Нужен сканеру для сигнатур с imageOnly: они не проверяются на не-PE данных и не уходят за пределы образа
+ * (заголовки + сырые данные секций; overlay в конце файла к образу не относится).
+ */
+public final class PeHeader {
+
+    /** Сколько байт от начала файла достаточно для разбора заголовков */
+    public static final int HEAD_BYTES = 64 * 1024;
+
+    private static final int MAX_SECTIONS = 96;
+
+    public record Section(String name, long rawOffset, long rawSize) {}
+
+    private final List<Section> sections;
+    private final long headersEnd;
+    private final long imageEnd;
+
+    private PeHeader(List<Section> sections, long headersEnd, long imageEnd) {
+        this.sections = sections;
+        this.headersEnd = headersEnd;
+        this.imageEnd = imageEnd;
+    }
+
+    public List<Section> getSections() { return sections; }
+
+    public long getHeadersEnd() { return headersEnd; }
+
+    /** Конец последней секции в файле (не больше размера файла) */
+    public long getImageEnd() { return imageEnd; }
+
+    /**
+     * head — начало файла (с текущей позиции), fileSize — полный размер.
+     * null — не PE или заголовки повреждены.
+     */
+    public static PeHeader parse(ByteBuffer head, long fileSize) {
+        ByteBuffer b = head.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = b.position();
+        int len = b.remaining();
+        if (len < 0x40 || b.get(base) != 'M' || b.get(base + 1) != 'Z') return null;
+
+        long peOff = Integer.toUnsignedLong(b.getInt(base + 0x3C));
+        if (peOff + 24 > len) return null;
+        int pe = (int) peOff;
+        if (b.getInt(base + pe) != 0x00004550) return null; // "PE\0\0"
+
+        int sectionCount = Short.toUnsignedInt(b.getShort(base + pe + 6));
+        int optionalSize = Short.toUnsignedInt(b.getShort(base + pe + 20));
+        if (sectionCount == 0 || sectionCount > MAX_SECTIONS) return null;
+
+        long table = peOff + 24 + optionalSize;
+        long tableEnd = table + 40L * sectionCount;
+        if (tableEnd > len || tableEnd > fileSize) return null;
+
+        List<Section> sections = new ArrayList<>(sectionCount);
+        long imageEnd = tableEnd;
+        for (int i = 0; i < sectionCount; i++) {
+            int s = base + (int) table + 40 * i;
+            StringBuilder name = new StringBuilder(8);
+            for (int k = 0; k < 8 && b.get(s + k) != 0; k++) name.append((char) (b.get(s + k) & 0xFF));
+            long rawSize = Integer.toUnsignedLong(b.getInt(s + 16));
+            long rawOffset = Integer.toUnsignedLong(b.getInt(s + 20));
+            if (rawSize == 0) continue;
+            if (rawOffset >= fileSize) return null;
+            long end = Math.min(fileSize, rawOffset + rawSize);
+            sections.add(new Section(name.toString(), rawOffset, end - rawOffset));
+            imageEnd = Math.max(imageEnd, end);
+        }
+        return new PeHeader(List.copyOf(sections), tableEnd, imageEnd);
+    }
+}
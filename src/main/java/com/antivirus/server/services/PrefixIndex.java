@@ -0,0 +1,135 @@
+package com.antivirus.server.services;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Индекс 8-байтовых префиксов: открытая адресация по long-ключу, значения — компактные int[] номеров образцов.
+ * Без боксинга: один поиск — несколько чтений из long[]. Массивы значений никогда не меняются на месте,
+ * поэтому copy() делит их с исходным индексом, и старые сборки ScanEngine остаются корректными.
+ */
+final class PrefixIndex {
+
+    /** Вызывается для каждой позиции, 8-байтовое окно которой есть в индексе */
+    interface Hits {
+        void at(int pos, int[] slots);
+    }
+
+    private long[] keys;
+    /** null — пустая ячейка */
+    private int[][] values;
+    private int size;
+
+    PrefixIndex(int expectedKeys) {
+        int cap = Integer.highestOneBit(Math.max(16, expectedKeys * 2 - 1)) << 1;
+        keys = new long[cap];
+        values = new int[cap][];
+    }
+
+    private PrefixIndex(PrefixIndex other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    PrefixIndex copy() {
+        return new PrefixIndex(this);
+    }
+
+    int size() { return size; }
+
+    int[] get(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int[] v = values[i];
+            if (v == null) return null;
+            if (keys[i] == key) return v;
+        }
+    }
+
+    void add(long key, int slot) {
+        if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+        int i = find(key);
+        if (values[i] == null) {
+            keys[i] = key;
+            values[i] = new int[]{slot};
+            size++;
+        } else {
+            int[] v = Arrays.copyOf(values[i], values[i].length + 1);
+            v[v.length - 1] = slot;
+            values[i] = v;
+        }
+    }
+
+    void remove(long key, int slot) {
+        int i = find(key);
+        int[] v = values[i];
+        if (v == null) return;
+        int at = -1;
+        for (int k = 0; k < v.length; k++) if (v[k] == slot) at = k;
+        if (at < 0) return;
+        if (v.length > 1) {
+            int[] w = new int[v.length - 1];
+            System.arraycopy(v, 0, w, 0, at);
+            System.arraycopy(v, at + 1, w, at, v.length - at - 1);
+            values[i] = w;
+        } else {
+            deleteCell(i);
+        }
+    }
+
+    /** Скользящее 8-байтовое окно (big-endian) по оставшимся байтам буфера: один поиск на позицию */
+    void forEachHit(ByteBuffer buf, Hits hits) {
+        int base = buf.position(), len = buf.remaining();
+        if (len < 8) return;
+        long window = 0;
+        for (int i = 0; i < 7; i++) window = (window << 8) | (buf.get(base + i) & 0xFF);
+        for (int pos = 0; pos + 8 <= len; pos++) {
+            window = (window << 8) | (buf.get(base + pos + 7) & 0xFF);
+            int[] slots = get(window);
+            if (slots != null) hits.at(pos, slots);
+        }
+    }
+
+    /** Ячейка с ключом или первая пустая на его пути */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    /** Удаление со сдвигом назад — без надгробий, цепочки поиска остаются короткими */
+    private void deleteCell(int i) {
+        int mask = keys.length - 1;
+        values[i] = null;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int ideal = hash(keys[j]) & mask;
+            boolean stays = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+            if (stays) continue;
+            keys[i] = keys[j];
+            values[i] = values[j];
+            values[j] = null;
+            i = j;
+        }
+        size--;
+    }
+
+    private void resize(int cap) {
+        long[] oldKeys = keys;
+        int[][] oldValues = values;
+        keys = new long[cap];
+        values = new int[cap][];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int j = find(oldKeys[i]);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,260 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Бинарная запись data.bin без промежуточных строк и массивов: hex разбирается по таблице прямо из исходной строки,
+ * размер записи считается заранее, байты пишутся в буфер вызывающего.
+ * Формат (little-endian): int nameLen, name (ASCII, прочее — '?'), long prefix, int sigLen, sig,
+ * long offsetBegin, long offsetEnd, byte objectType. Символы вне [0-9A-Fa-f] в hex-полях пропускаются,
+ * у prefix берутся первые 16 цифр, у сигнатуры непарная последняя цифра отбрасывается.
+ * Маска: байт "??" в сигнатуре — любой байт. У такой записи в objectType выставлен бит MASKED, байт образца
+ * равен 0, а после objectType идёт битовая маска из (sigLen + 7) / 8 байт (бит i, младший первым, — байт i
+ * задан точно). Записи без "??" кодируются ровно как раньше.
+ */
+public final class RecordEncoder {
+
+    /** Полубайт "?" в таблице HEX: считается цифрой сигнатуры, значение — 0 */
+    private static final byte WILD = 16;
+
+    /** Бит в objectType: за записью следует маска сигнатуры */
+    public static final int MASKED = 0x80;
+
+    /** Значение hex-цифры по ASCII-коду, -1 — не цифра */
+    private static final byte[] HEX = new byte[128];
+    static {
+        java.util.Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 10; i++) HEX['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            HEX['a' + i] = (byte) (10 + i);
+            HEX['A' + i] = (byte) (10 + i);
+        }
+        HEX['?'] = WILD;
+    }
+
+    private static final int FIXED = 4 + 8 + 4 + 8 + 8 + 1;
+
+    private RecordEncoder() {}
+
+    /** Точный размер записи в байтах */
+    public static int size(Signature s) {
+        int sigBytes = hexDigits(s.getObjectSignature()) / 2;
+        return FIXED + asciiLength(s.getName()) + sigBytes + (isMasked(s.getObjectSignature()) ? (sigBytes + 7) / 8 : 0);
+    }
+
+    /** Пишет запись с текущей позиции; буфер переводится в little-endian, места должно хватать на size(s) */
+    public static void encode(Signature s, ByteBuffer out) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        String name = s.getName();
+        String sig = s.getObjectSignature();
+        int sigBytes = hexDigits(sig) / 2;
+
+        out.putInt(asciiLength(name));
+        putAscii(name, out);
+
+        out.putLong(prefix8(s.getObjectSignaturePrefix()));
+        out.putInt(s.getObjectSignatureLength() == null ? sigBytes : s.getObjectSignatureLength());
+        putHex(sig, sigBytes, out);
+
+        out.putLong(s.getOffsetBegin() == null ? 0L : s.getOffsetBegin());
+        out.putLong(s.getOffsetEnd() == null ? 0L : s.getOffsetEnd());
+        if (isMasked(sig)) {
+            out.put((byte) (typeCode(s.getObjectType()) | MASKED));
+            putMask(sig, sigBytes, out);
+        } else {
+            out.put(typeCode(s.getObjectType()));
+        }
+    }
+
+    public static byte[] encode(Signature s) {
+        byte[] out = new byte[size(s)];
+        encode(s, ByteBuffer.wrap(out));
+        return out;
+    }
+
+    /** Все записи подряд в одном массиве: проход по размерам, затем запись без копирований */
+    public static byte[] encodeAll(List<Signature> items) {
+        long total = 0;
+        for (Signature s : items) total += size(s);
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalStateException("data.bin is too large: " + total);
+        ByteBuffer out = ByteBuffer.allocate((int) total);
+        for (Signature s : items) encode(s, out);
+        return out.array();
+    }
+
+    /** Байты сигнатуры (objectSignature) по тем же правилам разбора hex, что и в записи */
+    public static byte[] signatureBytes(Signature s) {
+        String sig = s.getObjectSignature();
+        byte[] out = new byte[hexDigits(sig) / 2];
+        putHex(sig, out.length, ByteBuffer.wrap(out));
+        return out;
+    }
+
+    /**
+     * Маска сигнатуры: mask[i] != 0 — байт i задан точно, 0 — "??".
+     * null, если в сигнатуре нет "??" (все байты точные).
+     */
+    public static byte[] signatureMask(Signature s) {
+        String sig = s.getObjectSignature();
+        if (!isMasked(sig)) return null;
+        byte[] mask = new byte[hexDigits(sig) / 2];
+        byte[] bits = new byte[(mask.length + 7) / 8];
+        putMask(sig, mask.length, ByteBuffer.wrap(bits));
+        for (int i = 0; i < mask.length; i++) mask[i] = (byte) ((bits[i >> 3] >> (i & 7)) & 1);
+        return mask;
+    }
+
+    /** Потоковая запись в канал через один переиспользуемый буфер */
+    public static final class ChannelWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buf;
+
+        public ChannelWriter(WritableByteChannel channel, ByteBuffer buf) {
+            this.channel = channel;
+            this.buf = buf.clear().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public void write(Signature s) throws IOException {
+            int size = size(s);
+            if (size > buf.remaining()) flush();
+            if (size > buf.capacity()) {
+                // запись больше буфера — редкость, пишем её отдельно
+                ByteBuffer big = ByteBuffer.allocate(size);
+                encode(s, big);
+                drain(big.flip());
+                return;
+            }
+            encode(s, buf);
+        }
+
+        /** Уже закодированная запись (Signature.recordBytes) — просто копия в буфер */
+        public void write(byte[] record) throws IOException {
+            if (record.length > buf.remaining()) flush();
+            if (record.length > buf.capacity()) {
+                drain(ByteBuffer.wrap(record));
+                return;
+            }
+            buf.put(record);
+        }
+
+        public void flush() throws IOException {
+            drain(buf.flip());
+            buf.clear();
+        }
+
+        private void drain(ByteBuffer b) throws IOException {
+            while (b.hasRemaining()) channel.write(b);
+        }
+    }
+
+    // ---------- поля ----------
+
+    /** Длина после кодирования в US-ASCII с заменой: суррогатная пара даёт один '?' */
+    private static int asciiLength(String s) {
+        if (s == null) return 0;
+        int n = 0;
+        for (int i = 0, len = s.length(); i < len; i++, n++) {
+            if (isPair(s, i)) i++;
+        }
+        return n;
+    }
+
+    private static void putAscii(String s, ByteBuffer out) {
+        if (s == null) return;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                out.put((byte) c);
+            } else {
+                out.put((byte) '?');
+                if (isPair(s, i)) i++;
+            }
+        }
+    }
+
+    private static boolean isPair(String s, int i) {
+        return Character.isHighSurrogate(s.charAt(i)) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+
+    private static int hexDigits(String s) {
+        if (s == null) return 0;
+        int n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            if (digit(s.charAt(i)) >= 0) n++;
+        }
+        return n;
+    }
+
+    /** Первые 16 hex-цифр как беззнаковое число (то же, что BigInteger(...).longValue()) */
+    private static long prefix8(String s) {
+        if (s == null) return 0L;
+        long v = 0;
+        for (int i = 0, len = s.length(), taken = 0; i < len && taken < 16; i++) {
+            int d = digit(s.charAt(i));
+            if (d >= 0 && d != WILD) {
+                v = (v << 4) | d;
+                taken++;
+            }
+        }
+        return v;
+    }
+
+    private static void putHex(String s, int bytes, ByteBuffer out) {
+        int hi = -1;
+        for (int i = 0; bytes > 0; i++) {
+            int d = digit(s.charAt(i));
+            if (d < 0) continue;
+            if (hi < 0) {
+                hi = d;
+            } else {
+                // байт с "?" в любом полубайте — "??", значение 0
+                out.put(hi == WILD || d == WILD ? 0 : (byte) ((hi << 4) | d));
+                hi = -1;
+                bytes--;
+            }
+        }
+    }
+
+    private static boolean isMasked(String s) {
+        return s != null && s.indexOf('?') >= 0;
+    }
+
+    /** Биты точных байт, младший бит первым */
+    private static void putMask(String s, int bytes, ByteBuffer out) {
+        int hi = -1, bit = 0, acc = 0;
+        for (int i = 0; bytes > 0; i++) {
+            int d = digit(s.charAt(i));
+            if (d < 0) continue;
+            if (hi < 0) {
+                hi = d;
+                continue;
+            }
+            if (hi != WILD && d != WILD) acc |= 1 << bit;
+            hi = -1;
+            bytes--;
+            if (++bit == 8 || bytes == 0) {
+                out.put((byte) acc);
+                acc = 0;
+                bit = 0;
+            }
+        }
+    }
+
+    private static int digit(char c) {
+        return c < 128 ? HEX[c] : -1;
+    }
+
+    private static byte typeCode(Signature.ObjectType t) {
+        if (t == null) return 0;
+        return switch (t) {
+            case PE -> 0;
+            case JAVA -> 1;
+        };
+    }
+}
@@ -58,7 +58,7 @@ public class RefreshTokenService {
         repo.deleteByUser_Id(userId);
     }
 
-    private static String sha256(String s) {
+    static String sha256(String s) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             return HexFormat.of().formatHex(md.digest(s.getBytes(StandardCharsets.UTF_8)));
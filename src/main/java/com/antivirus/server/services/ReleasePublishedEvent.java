@@ -0,0 +1,8 @@
+package com.antivirus.server.services;
+
+/**
+ * Публикуется ReleaseService после того, как опубликованный релиз подменён в памяти
+ * (явная публикация, откат или синхронизация с другим узлом).
+ */
+public record ReleasePublishedEvent(long number) {
+}
@@ -0,0 +1,320 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Release;
+import com.antivirus.server.models.Release.Status;
+import com.antivirus.server.models.ResignJob;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.repository.ReleaseEntryJdbcRepository;
+import com.antivirus.server.repository.ReleaseRepository;
+import com.antivirus.server.repository.SignatureRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Жизненный цикл релизов: сборка в фоне -> READY -> явная публикация (атомарная подмена снимка).
+ * Правки через CRUD попадают к клиентам только со следующим опубликованным релизом.
+ * Сборка ждёт переподписи записей после смены алгоритма или ключа (ResignJobService.isCurrent) — иначе релиз
+ * разошёлся бы с подписями старым ключом.
+ */
+@Service
+public class ReleaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReleaseService.class);
+    private static final int MAX_NUMBER_ATTEMPTS = 5;
+    private static final String KEY_ROTATION = "key-rotation";
+
+    private final ReleaseRepository releases;
+    private final ReleaseEntryJdbcRepository entries;
+    private final SignatureRepository signatures;
+    private final ReleaseSnapshotService snapshots;
+    private final ResignJobService resign;
+    private final ApplicationEventPublisher events;
+    private final EntityManager em;
+    private final TaskExecutor releaseExecutor;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readTx;
+    private final int retain;
+    private final long resignWaitMs;
+
+    /** Сколько правок сигнатур ещё не вошло ни в один запущенный релиз */
+    private final AtomicLong pendingChanges = new AtomicLong();
+
+    public ReleaseService(ReleaseRepository releases,
+                          ReleaseEntryJdbcRepository entries,
+                          SignatureRepository signatures,
+                          ReleaseSnapshotService snapshots,
+                          ResignJobService resign,
+                          ApplicationEventPublisher events,
+                          EntityManager em,
+                          @Qualifier("releaseExecutor") TaskExecutor releaseExecutor,
+                          PlatformTransactionManager txManager,
+                          @Value("${av.release.retain:10}") int retain,
+                          @Value("${av.release.resign-wait-ms:3600000}") long resignWaitMs) {
+        this.releases = releases;
+        this.entries = entries;
+        this.signatures = signatures;
+        this.snapshots = snapshots;
+        this.resign = resign;
+        this.events = events;
+        this.em = em;
+        this.releaseExecutor = releaseExecutor;
+        this.tx = new TransactionTemplate(txManager);
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.retain = retain;
+        this.resignWaitMs = resignWaitMs;
+    }
+
+    public List<Release> list() {
+        return releases.findTop50ByOrderByNumberDesc();
+    }
+
+    public Optional<Release> get(long number) {
+        return releases.findById(number);
+    }
+
+    public long getPendingChanges() {
+        return pendingChanges.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSignaturesChanged(SignaturesChangedEvent event) {
+        pendingChanges.incrementAndGet();
+    }
+
+    /**
+     * Завести релиз со следующим номером и собрать его в фоне.
+     * Номер max + 1 может одновременно занять другой узел кластера — тогда вставка упирается в первичный ключ
+     * и номер берётся заново.
+     */
+    public synchronized Release requestBuild(String by) {
+        Release r = null;
+        for (int attempt = 1; r == null; attempt++) {
+            try {
+                r = tx.execute(st -> {
+                    Release n = new Release();
+                    n.setNumber(releases.findMaxNumber() + 1);
+                    n.setCreatedBy(by);
+                    return releases.saveAndFlush(n);
+                });
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_NUMBER_ATTEMPTS) throw e;
+                log.info("Release number is taken by another node, retrying");
+            }
+        }
+        pendingChanges.set(0);
+        long number = r.getNumber();
+        releaseExecutor.execute(() -> build(number));
+        return r;
+    }
+
+    private void build(long number) {
+        try {
+            if (!snapshots.isMerkle()) awaitResign(number);
+            // состав релиза — один консистентный проход курсором по ACTIVE
+            List<Signature> items = tx.execute(st -> {
+                List<Signature> list = new ArrayList<>();
+                try (Stream<Signature> s = signatures.streamAllByStatus(Signature.Status.ACTIVE)) {
+                    s.forEach(x -> {
+                        list.add(x);
+                        em.detach(x);
+                    });
+                }
+                entries.insertAll(number, list);
+                return list;
+            });
+
+            OffsetDateTime date = items.stream()
+                    .map(Signature::getUpdatedAt)
+                    .filter(d -> d != null)
+                    .max(OffsetDateTime::compareTo)
+                    .orElseGet(OffsetDateTime::now);
+            ReleaseSnapshot snapshot = snapshots.build(number, date, items, null);
+
+            tx.executeWithoutResult(st -> {
+                Release r = releases.findById(number).orElseThrow();
+                r.setStatus(Status.READY);
+                r.setCount((long) items.size());
+                r.setReleaseDate(date);
+                r.setContentSha256(snapshot.getContentSha256());
+                r.setHeaderSignature(snapshot.getHeader().headerSignature);
+                r.setManifestSignature(snapshot.getManifestSignature());
+                r.setSignatureAlgorithm(snapshot.getHeader().signatureAlgorithm);
+                r.setMerkleRoot(snapshot.getHeader().merkleRoot);
+                r.setChunkIndexSignature(snapshot.getChunkIndexSignature());
+                r.setManifestV2Signature(snapshot.getManifestV2Signature());
+                r.setPartitionSignatures(snapshot.getPartitionSignatures());
+            });
+            log.info("Release {} built: {} records", number, items.size());
+        } catch (Exception e) {
+            log.error("Release {} build failed", number, e);
+            markFailed(number, e.toString());
+        }
+    }
+
+    /**
+     * Классический релиз отдаёт подписи записей (GUID:signature), поэтому они должны быть сделаны текущими
+     * алгоритмом и ключом; переподпись запускается, если ещё не идёт. Релизу в режиме Меркла ждать не нужно:
+     * клиент проверяет записи по подписанному корню, подписи записей в нём не участвуют.
+     */
+    private void awaitResign(long number) throws InterruptedException {
+        ResignJob started = resign.ensureCurrent("release-" + number);
+        if (started == null) return;
+        log.info("Release {} waits for resign job {}", number, started.getId());
+        long deadline = System.currentTimeMillis() + resignWaitMs;
+        while (!resign.isCurrent()) {
+            ResignJob job = resign.latest().orElseThrow();
+            if (job.getStatus() == ResignJob.Status.FAILED) {
+                throw new IllegalStateException("Resign job " + job.getId() + " failed: " + job.getError());
+            }
+            if (job.getStatus() == ResignJob.Status.DONE) resign.ensureCurrent("release-" + number); // ключ сменился ещё раз
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Records are not re-signed with the current signing key after "
+                        + resignWaitMs + " ms");
+            }
+            Thread.sleep(1000);
+        }
+    }
+
+    private void markFailed(long number, String error) {
+        tx.executeWithoutResult(st -> {
+            entries.deleteRelease(number);
+            releases.findById(number).ifPresent(r -> {
+                r.setStatus(Status.FAILED);
+                r.setError(error);
+            });
+        });
+    }
+
+    /**
+     * Опубликовать READY-релиз (или вернуть ранее опубликованный RETIRED — откат).
+     * Предыдущий опубликованный становится RETIRED, клиенты переключаются одной подменой ссылки.
+     */
+    public synchronized Release publish(long number) {
+        Release r = releases.findById(number)
+                .orElseThrow(() -> new IllegalArgumentException("Release not found: " + number));
+        if (r.getStatus() != Status.READY && r.getStatus() != Status.RETIRED) {
+            throw new IllegalStateException("Release " + number + " is " + r.getStatus());
+        }
+        // собранный снимок не держим до публикации (READY-релиз может ждать её долго) — поднимаем из БД
+        ReleaseSnapshot snapshot = load(r);
+
+        Release published = tx.execute(st -> {
+            for (Release p : releases.findAllByStatusOrderByNumberDesc(Status.PUBLISHED)) {
+                p.setStatus(Status.RETIRED);
+            }
+            Release cur = releases.findById(number).orElseThrow();
+            cur.setStatus(Status.PUBLISHED);
+            cur.setPublishedAt(OffsetDateTime.now());
+            return cur;
+        });
+        swap(snapshot);
+        prune();
+        return published;
+    }
+
+    /** Поднять релиз из release_entries с сохранёнными подписями (без повторной подписи) */
+    private ReleaseSnapshot load(Release r) {
+        List<Signature> items = readTx.execute(st -> entries.findAll(r.getNumber()));
+        ReleaseSnapshot snapshot = snapshots.build(r.getNumber(), r.getReleaseDate(), items,
+                new ReleaseSnapshotService.Stored(r.getHeaderSignature(), r.getManifestSignature(),
+                        r.getSignatureAlgorithm(), r.getMerkleRoot(), r.getChunkIndexSignature(),
+                        r.getManifestV2Signature(), r.getPartitionSignatures()));
+        if (!snapshot.getContentSha256().equals(r.getContentSha256())) {
+            throw new IllegalStateException("Release " + r.getNumber() + " content does not match its hash");
+        }
+        return snapshot;
+    }
+
+    private void swap(ReleaseSnapshot snapshot) {
+        snapshots.publish(snapshot);
+        events.publishEvent(new ReleasePublishedEvent(snapshot.getNumber()));
+        log.info("Release {} published", snapshot.getNumber());
+    }
+
+    /** Старые RETIRED-релизы сверх av.release.retain теряют состав (дельта от них -> 410) */
+    private void prune() {
+        List<Release> retired = releases.findAllByStatusOrderByNumberDesc(Status.RETIRED);
+        for (Release r : retired.subList(Math.min(retain, retired.size()), retired.size())) {
+            tx.executeWithoutResult(st -> {
+                entries.deleteRelease(r.getNumber());
+                releases.findById(r.getNumber()).ifPresent(x -> x.setStatus(Status.PRUNED));
+            });
+        }
+    }
+
+    /**
+     * Старт: прерванные сборки -> FAILED, затем поднять опубликованный релиз.
+     * Если релизов ещё нет — собрать и опубликовать первый, чтобы клиентам было что отдать.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        for (Release r : releases.findAllByStatusOrderByNumberDesc(Status.BUILDING)) {
+            markFailed(r.getNumber(), "interrupted by restart");
+        }
+        if (releases.findFirstByStatus(Status.PUBLISHED).isPresent()) {
+            syncPublished();
+            return;
+        }
+        buildAndPublish("bootstrap");
+    }
+
+    /**
+     * Другой узел кластера мог опубликовать релиз — догоняем по таблице releases.
+     * Релиз, подписанный до смены алгоритма или ключа, отдаётся, пока не опубликован пересобранный:
+     * его заголовок не сходится с /manifest/cert, поэтому сборка нового запускается сразу.
+     */
+    @Scheduled(fixedDelayString = "${av.release.sync-ms:15000}", initialDelayString = "${av.release.sync-ms:15000}")
+    public synchronized void syncPublished() {
+        releases.findFirstByStatus(Status.PUBLISHED).ifPresent(r -> {
+            ReleaseSnapshot cur = snapshots.current();
+            if (cur == null || cur.getNumber() != r.getNumber()) {
+                cur = load(r);
+                swap(cur);
+            }
+            if (!snapshots.isCurrentKey(cur) && !rebuildPending(r.getNumber())) {
+                log.info("Release {} is signed with a previous key, building a new one", r.getNumber());
+                buildAndPublish(KEY_ROTATION);
+            }
+        });
+    }
+
+    /** Пересборка под новый ключ уже идёт (на этом или другом узле) */
+    private boolean rebuildPending(long published) {
+        return releases.findTop50ByOrderByNumberDesc().stream()
+                .anyMatch(x -> x.getNumber() > published && KEY_ROTATION.equals(x.getCreatedBy())
+                        && (x.getStatus() == Status.BUILDING || x.getStatus() == Status.READY));
+    }
+
+    /** Сборка и публикация идут в одном однопоточном releaseExecutor — публикация начнётся после сборки */
+    private void buildAndPublish(String by) {
+        Release r = requestBuild(by);
+        releaseExecutor.execute(() -> {
+            try {
+                publish(r.getNumber());
+            } catch (Exception e) {
+                log.error("Cannot publish {} release {}", by, r.getNumber(), e);
+            }
+        });
+    }
+}
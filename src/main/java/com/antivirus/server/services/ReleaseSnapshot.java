@@ -0,0 +1,158 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.dto.ManifestHeaderDto;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.util.HashUtil;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Неизменяемый «снимок» релиза баз: всё, что отдают /manifest и /api/signatures/bundle,
+ * посчитано и подписано один раз. Запросы только копируют готовые байты в сокет.
+ */
+public final class ReleaseSnapshot {
+
+    private final long number;
+    private final Signature.ObjectType partition;
+    private final ManifestHeaderDto header;
+    private final byte[] manifestJson;
+    private final byte[] bundle;
+    /** Бандл с data.bin v2 собирается при первом запросе: большинству клиентов он не нужен */
+    private Supplier<byte[]> bundleV2Builder;
+    private byte[] bundleV2;
+    private String bundleV2Etag;
+    private final String boundary;
+    private final String contentSha256;
+    private final String manifestSignature;
+    private final String manifestV2Signature;
+    private final MerkleTree merkle;
+    private final MerkleTree merkleV2;
+    private final ChunkIndex chunks;
+    private final byte[] chunkIndex;
+    private final String chunkIndexSignature;
+    private final String chunkIndexEtag;
+    private final String manifestEtag;
+    private final String bundleEtag;
+    private final Map<Signature.ObjectType, ReleaseSnapshot> partitions;
+
+    ReleaseSnapshot(long number, Signature.ObjectType partition, ManifestHeaderDto header, byte[] manifestJson, byte[] bundle,
+                    Supplier<byte[]> bundleV2,
+                    String boundary,
+                    String contentSha256, String manifestSignature, String manifestV2Signature, MerkleTree merkle,
+                    MerkleTree merkleV2,
+                    ChunkIndex chunks, byte[] chunkIndex, String chunkIndexSignature,
+                    Map<Signature.ObjectType, ReleaseSnapshot> partitions) {
+        this.number = number;
+        this.partition = partition;
+        this.header = header;
+        this.manifestJson = manifestJson;
+        this.bundle = bundle;
+        this.bundleV2Builder = bundleV2;
+        this.boundary = boundary;
+        this.contentSha256 = contentSha256;
+        this.manifestSignature = manifestSignature;
+        this.manifestV2Signature = manifestV2Signature;
+        this.merkle = merkle;
+        this.merkleV2 = merkleV2;
+        this.chunks = chunks;
+        this.chunkIndex = chunkIndex;
+        this.chunkIndexSignature = chunkIndexSignature;
+        this.chunkIndexEtag = chunkIndex == null ? null : "\"c-" + HashUtil.sha256Hex(chunkIndex) + "\"";
+        // ETag — от отдаваемых байт: номер релиза, дата, подписи и алгоритм меняют представление, даже если записи те же
+        this.manifestEtag = "\"m-" + HashUtil.sha256Hex(manifestJson) + "\"";
+        this.bundleEtag = "\"b-" + HashUtil.sha256Hex(bundle) + "\"";
+        this.partitions = partitions;
+    }
+
+    /** Номер релиза */
+    public long getNumber() { return number; }
+
+    /** Тип записей раздела; null — весь релиз */
+    public Signature.ObjectType getPartition() { return partition; }
+
+    /** Раздел релиза по типу записей; null — разделы не собираются (av.release.partitions=false) */
+    public ReleaseSnapshot partition(Signature.ObjectType type) {
+        return partitions.get(type);
+    }
+
+    /**
+     * Подписи разделов для хранения с релизом: строки TYPE:headerSignature:manifestSignature:merkleRoot:manifestV2Signature;
+     * null — снимок собран без разделов
+     */
+    public String getPartitionSignatures() {
+        if (partitions == null || partitions.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder();
+        partitions.forEach((type, p) -> sb.append(type).append(':').append(p.header.headerSignature).append(':')
+                .append(p.manifestSignature).append(':')
+                .append(p.header.merkleRoot == null ? "" : p.header.merkleRoot).append(':')
+                .append(p.manifestV2Signature == null ? "" : p.manifestV2Signature).append("\n"));
+        return sb.toString();
+    }
+
+    public ManifestHeaderDto getHeader() { return header; }
+
+    /** ManifestDto (заголовок + записи), уже сериализованный в JSON */
+    public byte[] getManifestJson() { return manifestJson; }
+
+    /** Готовое тело multipart/mixed: manifest.txt + data.bin; записей с маской в нём нет */
+    public byte[] getBundle() { return bundle; }
+
+    /**
+     * То же с data.bin v2 (DataBinV2): индексированные записи, включая записи с маской (тогда со своим manifest.txt);
+     * собирается при первом обращении
+     */
+    public synchronized byte[] getBundleV2() {
+        if (bundleV2 == null) {
+            bundleV2 = bundleV2Builder.get();
+            bundleV2Etag = "\"b2-" + HashUtil.sha256Hex(bundleV2) + "\"";
+            bundleV2Builder = null;
+        }
+        return bundleV2;
+    }
+
+    public String getBoundary() { return boundary; }
+
+    /**
+     * SHA-256 содержимого (строки manifest.txt без подписи + data.bin, если есть записи с маской — и строки manifest.txt v2):
+     * сверка состава при подъёме релиза из БД
+     */
+    public String getContentSha256() { return contentSha256; }
+
+    /** Base64 ЭЦП manifest.txt (строка MANIFEST_SIG) */
+    public String getManifestSignature() { return manifestSignature; }
+
+    /** Base64 ЭЦП manifest.txt бандла v2; null — записей с маской нет, manifest.txt тот же, что у v1 */
+    public String getManifestV2Signature() { return manifestV2Signature; }
+
+    /** Дерево Меркла релиза; null — релиз без режима Меркла */
+    public MerkleTree getMerkle() { return merkle; }
+
+    /**
+     * Дерево для клиентов data.bin v2: если есть записи с маской — отдельное, по всем записям (его корень —
+     * в manifest.txt v2 под его MANIFEST_SIG), иначе то же, что у v1 (корень в заголовке)
+     */
+    public MerkleTree getMerkle(boolean v2) { return v2 && merkleV2 != null ? merkleV2 : merkle; }
+
+    public ChunkIndex getChunks() { return chunks; }
+
+    /** Подписанный текст индекса чанков (/api/signatures/chunks) */
+    public byte[] getChunkIndex() { return chunkIndex; }
+
+    /** Base64 ЭЦП индекса чанков (строка CHUNKS_SIG) */
+    public String getChunkIndexSignature() { return chunkIndexSignature; }
+
+    public String getChunkIndexEtag() { return chunkIndexEtag; }
+
+    /** Сильный ETag для /manifest — SHA-256 тела ответа */
+    public String getManifestEtag() { return manifestEtag; }
+
+    /** Сильный ETag для /api/signatures/bundle — SHA-256 тела ответа */
+    public String getBundleEtag() { return bundleEtag; }
+
+    /** ETag бандла v2 — тоже от его байт, поэтому собирает его */
+    public synchronized String getBundleV2Etag() {
+        getBundleV2();
+        return bundleV2Etag;
+    }
+}
@@ -0,0 +1,264 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.dto.ManifestDto;
+import com.antivirus.server.dto.ManifestHeaderDto;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.util.HashUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Держит в памяти опубликованный ReleaseSnapshot и умеет собирать снимки.
+ * Публикация — атомарная подмена ссылки, читатели никогда не ждут сборку и не ходят в БД.
+ */
+@Service
+public class ReleaseSnapshotService {
+
+    private final SignatureService service;
+    private final ManifestSigningService signing;
+    private final ObjectMapper mapper;
+
+    private final boolean merkle;
+    private final int chunkBits;
+    private final boolean partitions;
+
+    private final AtomicReference<ReleaseSnapshot> published = new AtomicReference<>();
+
+    /**
+     * Сохранённые подписи релиза — с ними снимок собирается без повторной подписи.
+     * manifestV2Signature — подпись manifest.txt бандла v2; null — в релизе нет записей с маской, manifest.txt общий.
+     * partitionSignatures — подписи разделов (см. ReleaseSnapshot.getPartitionSignatures); null — релиз собран без разделов.
+     */
+    public record Stored(String headerSignature, String manifestSignature, String algorithm, String merkleRoot,
+                         String chunkIndexSignature, String manifestV2Signature, String partitionSignatures) {
+
+        public Stored(String headerSignature, String manifestSignature, String algorithm, String merkleRoot,
+                      String chunkIndexSignature) {
+            this(headerSignature, manifestSignature, algorithm, merkleRoot, chunkIndexSignature, null, null);
+        }
+    }
+
+    public ReleaseSnapshotService(SignatureService service, ManifestSigningService signing, ObjectMapper mapper,
+                                  @Value("${av.release.merkle:false}") boolean merkle,
+                                  @Value("${av.release.chunk-bits:8}") int chunkBits,
+                                  @Value("${av.release.partitions:false}") boolean partitions) {
+        if (chunkBits < 0 || chunkBits > 16) {
+            throw new IllegalArgumentException("av.release.chunk-bits must be 0..16: " + chunkBits);
+        }
+        this.service = service;
+        this.signing = signing;
+        this.mapper = mapper;
+        this.merkle = merkle;
+        this.chunkBits = chunkBits;
+        this.partitions = partitions;
+    }
+
+    /** Новые релизы собираются в режиме Меркла (av.release.merkle) */
+    boolean isMerkle() {
+        return merkle;
+    }
+
+    /** Заголовок снимка подписан текущими алгоритмом и ключом (см. ManifestSigningService.isCurrent) */
+    boolean isCurrentKey(ReleaseSnapshot snapshot) {
+        return signing.isCurrent(snapshot.getHeader());
+    }
+
+    /** Опубликованный релиз или null, если ещё ни один не опубликован */
+    public ReleaseSnapshot current() {
+        return published.get();
+    }
+
+    void publish(ReleaseSnapshot snapshot) {
+        published.set(snapshot);
+    }
+
+    /**
+     * Собрать снимок по составу релиза.
+     * stored == null — подписать заново (режим Меркла — по av.release.merkle), иначе использовать
+     * сохранённые подписи релиза в том режиме, в котором он был собран.
+     * В режиме Меркла manifest.txt содержит только GUID записей и строку MERKLE_ROOT, корень подписан в заголовке.
+     * При av.release.partitions рядом собираются разделы по ObjectType — со своими count и подписями заголовка
+     * и манифеста. Их подписи хранятся с релизом так же, как основные (ECDSA недетерминирована — иначе каждый узел
+     * отдавал бы под тем же ETag свои байты); релиз, собранный без разделов, их и не отдаёт.
+     */
+    ReleaseSnapshot build(long number, OffsetDateTime releaseDate, List<Signature> items, Stored stored) {
+        boolean merkleMode = stored == null ? merkle : stored.merkleRoot() != null;
+        Map<Signature.ObjectType, Stored> storedParts = stored == null ? null
+                : parsePartitions(stored.partitionSignatures(), stored.algorithm());
+        Map<Signature.ObjectType, ReleaseSnapshot> parts = new EnumMap<>(Signature.ObjectType.class);
+        if (partitions && (stored == null || storedParts != null)) {
+            for (Signature.ObjectType type : Signature.ObjectType.values()) {
+                Stored partStored = storedParts == null ? null : storedParts.get(type);
+                if (stored != null && partStored == null) continue;
+                List<Signature> part = items.stream().filter(s -> typeOf(s) == type).toList();
+                parts.put(type, assemble(number, releaseDate, part, partStored, merkleMode, type, Map.of()));
+            }
+        }
+        return assemble(number, releaseDate, items, stored, merkleMode, null, parts);
+    }
+
+    /** Строки TYPE:headerSignature:manifestSignature:merkleRoot:manifestV2Signature (Base64 и hex двоеточий не содержат) */
+    private static Map<Signature.ObjectType, Stored> parsePartitions(String text, String algorithm) {
+        if (text == null) return null;
+        Map<Signature.ObjectType, Stored> out = new EnumMap<>(Signature.ObjectType.class);
+        for (String line : text.split("\n")) {
+            if (line.isEmpty()) continue;
+            String[] f = line.split(":", -1);
+            if (f.length != 5) throw new IllegalStateException("Bad partition signature line: " + line);
+            out.put(Signature.ObjectType.valueOf(f[0]), new Stored(f[1], f[2], algorithm, f[3].isEmpty() ? null : f[3],
+                    null, f[4].isEmpty() ? null : f[4], null));
+        }
+        return out;
+    }
+
+    /** Тип записи; у старых записей без типа — PE */
+    static Signature.ObjectType typeOf(Signature s) {
+        return s.getObjectType() == null ? Signature.ObjectType.PE : s.getObjectType();
+    }
+
+    /**
+     * partition != null — раздел: без чанков и без собственных разделов.
+     * Записи с маской (SignatureBytes.isMasked) попадают только в бандл v2: у него тогда свой manifest.txt
+     * по всем записям со своей подписью, её хеш входит в contentSha256. В режиме Меркла у v2 тогда и своё дерево
+     * по всем записям: корень заголовка покрывает только записи v1, корень v2 подписан MANIFEST_SIG манифеста v2,
+     * доказательства для него — /api/signatures/proof?format=2.
+     */
+    private ReleaseSnapshot assemble(long number, OffsetDateTime releaseDate, List<Signature> all, Stored stored,
+                                     boolean merkleMode, Signature.ObjectType partition,
+                                     Map<Signature.ObjectType, ReleaseSnapshot> parts) {
+        List<Signature> items = all.stream().anyMatch(SignatureBytes::isMasked)
+                ? all.stream().filter(s -> !SignatureBytes.isMasked(s)).toList()
+                : all;
+        int count = items.size();
+        MerkleTree tree = merkleMode ? MerkleTree.build(items) : null;
+        String root = tree == null ? null : HexFormat.of().formatHex(tree.root());
+        if (stored != null && root != null && !root.equals(stored.merkleRoot())) {
+            throw new IllegalStateException("Release " + number + " Merkle root does not match");
+        }
+        ManifestHeaderDto header = stored == null
+                ? signing.buildSignedHeader(number, releaseDate, count, root, partition)
+                : signing.restoreHeader(number, releaseDate, count, stored.headerSignature(), stored.algorithm(), root,
+                        partition);
+
+        // --- manifest.txt ---
+        String manifestCore = manifestText(items, root);
+        String manifestSig = stored == null ? null : stored.manifestSignature();
+        String manifestSigB64 = manifestSig == null
+                ? signing.signString(manifestCore)                              // 2.3 ЭЦП
+                : manifestSig;
+        byte[] manifestBytes = (manifestCore + "MANIFEST_SIG:" + manifestSigB64 + "\n").getBytes(StandardCharsets.UTF_8);
+
+        byte[] dataBytes = SignatureBytes.buildDataBin(items);
+
+        // --- manifest.txt v2: только если есть записи с маской, иначе тот же, что у v1
+        byte[] manifestV2Core = null;
+        byte[] manifestV2 = null;
+        String manifestV2Sig = null;
+        MerkleTree treeV2 = null;
+        if (items != all) {
+            treeV2 = tree == null ? null : MerkleTree.build(all);
+            String text = manifestText(all, treeV2 == null ? null : HexFormat.of().formatHex(treeV2.root()));
+            manifestV2Sig = stored == null || stored.manifestV2Signature() == null
+                    ? signing.signString(text)
+                    : stored.manifestV2Signature();
+            manifestV2Core = text.getBytes(StandardCharsets.UTF_8);
+            manifestV2 = (text + "MANIFEST_SIG:" + manifestV2Sig + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        String contentSha256 = manifestV2Core == null
+                ? HashUtil.sha256Hex(manifestCore.getBytes(StandardCharsets.UTF_8), dataBytes)
+                : HashUtil.sha256Hex(manifestCore.getBytes(StandardCharsets.UTF_8), dataBytes, manifestV2Core);
+        String boundary = "----AVBOUND-" + contentSha256.substring(0, 32);
+
+        byte[] manifestJson;
+        try {
+            manifestJson = mapper.writeValueAsBytes(new ManifestDto(header, items));
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot serialize manifest", e);
+        }
+
+        byte[] bundle = MultipartBundle.assemble(boundary, manifestBytes, dataBytes);
+        int manifestFrom = MultipartBundle.manifestPartHeader(boundary).length;
+        int manifestTo = manifestFrom + manifestBytes.length;
+        int dataFrom = manifestTo + MultipartBundle.dataPartHeader(boundary).length;
+        int[] bounds = SignatureBytes.recordBounds(items);
+        Supplier<byte[]> bundleV2 = bundleV2(boundary, bundle, manifestFrom, manifestTo, dataFrom, bounds, all, manifestV2);
+        if (partition != null) {
+            return new ReleaseSnapshot(number, partition, header, manifestJson, bundle, bundleV2, boundary,
+                    contentSha256, manifestSigB64, manifestV2Sig, tree, treeV2, null, null, null, parts);
+        }
+
+        // --- чанки: релиз старого ключа индекса не отдаёт — подпись текущим ключом разошлась бы с заголовком,
+        // а до публикации пересобранного релиза (ReleaseService.syncPublished) клиенты берут бандл целиком
+        if (stored != null && !signing.isCurrent(header)) {
+            return new ReleaseSnapshot(number, null, header, manifestJson, bundle, bundleV2, boundary, contentSha256,
+                    manifestSigB64, manifestV2Sig, tree, treeV2, null, null, null, parts);
+        }
+        // подпись индекса сохранённая, если она подходит к тексту (не менялись chunk-bits и ключ)
+        ChunkIndex chunks = ChunkIndex.build(items, bundle, dataFrom, bounds, chunkBits);
+        String chunkText = chunks.text(number);
+        String chunkSig = stored == null ? null : stored.chunkIndexSignature();
+        if (chunkSig == null || !signing.verify(chunkText.getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(chunkSig))) {
+            chunkSig = signing.signString(chunkText);
+        }
+        byte[] chunkIndex = (chunkText + "CHUNKS_SIG:" + chunkSig + "\n").getBytes(StandardCharsets.UTF_8);
+
+        return new ReleaseSnapshot(number, null, header, manifestJson, bundle, bundleV2, boundary, contentSha256,
+                manifestSigB64, manifestV2Sig, tree, treeV2, chunks, chunkIndex, chunkSig, parts);
+    }
+
+    /** Строки manifest.txt без подписи: count, GUID:signature (2.2) или, в режиме Меркла, GUID и MERKLE_ROOT */
+    private String manifestText(List<Signature> items, String root) {
+        StringBuilder txt = new StringBuilder();
+        txt.append(items.size()).append("\n");                                  // 2.1 count
+        if (root == null) {
+            service.guidWithSignatureBase64(items).forEach(l -> txt.append(l).append("\n"));
+        } else {
+            items.forEach(s -> txt.append(s.getId()).append("\n"));
+            txt.append("MERKLE_ROOT:").append(root).append("\n");
+        }
+        return txt.toString();
+    }
+
+    /**
+     * Ленивая сборка бандла v2 из байт v1 внутри бандла — снимок не держит items.
+     * Если есть записи с маской, в замыкании остаются только их образы и manifest.txt v2.
+     */
+    private static Supplier<byte[]> bundleV2(String boundary, byte[] bundle, int manifestFrom, int manifestTo,
+                                             int dataFrom, int[] bounds, List<Signature> all, byte[] manifestV2) {
+        if (manifestV2 == null) {
+            return () -> MultipartBundle.assemble(boundary, Arrays.copyOfRange(bundle, manifestFrom, manifestTo),
+                    DataBinV2.build(bundle, dataFrom, bounds));
+        }
+        List<byte[]> masked = all.stream().filter(SignatureBytes::isMasked).map(SignatureBytes::recordBytes).toList();
+        boolean[] isMasked = new boolean[all.size()];
+        for (int i = 0; i < all.size(); i++) isMasked[i] = SignatureBytes.isMasked(all.get(i));
+        return () -> {
+            // data.bin всех записей в порядке релиза: записи v1 — срезами бандла, записи с маской — на своих местах
+            int total = bounds[bounds.length - 1];
+            for (byte[] r : masked) total += r.length;
+            byte[] data = new byte[total];
+            int[] allBounds = new int[isMasked.length + 1];
+            for (int i = 0, v1 = 0, m = 0; i < isMasked.length; i++) {
+                byte[] src = isMasked[i] ? masked.get(m) : bundle;
+                int from = isMasked[i] ? 0 : dataFrom + bounds[v1];
+                int length = isMasked[i] ? masked.get(m++).length : bounds[v1 + 1] - bounds[v1++];
+                System.arraycopy(src, from, data, allBounds[i], length);
+                allBounds[i + 1] = allBounds[i] + length;
+            }
+            return MultipartBundle.assemble(boundary, manifestV2, DataBinV2.build(data, 0, allBounds));
+        };
+    }
+}
@@ -0,0 +1,248 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.ResignJob;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.repository.ResignJobRepository;
+import com.antivirus.server.repository.SignatureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Переподпись всей таблицы фоновой задачей.
+ * Таблица читается keyset-порциями по id, подпись считается параллельно на всех ядрах,
+ * каждая порция коммитится отдельно (JDBC batch update + курсор задачи в одной транзакции),
+ * поэтому блокировки короткие, а после рестарта задача продолжает с последней порции.
+ * Смена алгоритма или ключа подписи (ManifestSigningService.getSigningKey) запускает переподпись сама:
+ * пока она не завершена, записи подписаны прежним ключом — релизы ждут её (isCurrent), проверка ЭЦП пропускается.
+ * Если под текущим ключом задач ещё не было (первый запуск), а выборка записей уже проходит проверку им,
+ * переподпись не запускается — заводится завершённая задача (seed).
+ * Строка, у которой меняется только подпись, не получает новую version/updated_at: для релизов, дельт и сканера
+ * её содержимое прежнее. Клиенты с релизом старого ключа получают полный бандл (DeltaService).
+ * В режиме Меркла задача тоже нужна: подписи записей хранятся для релизов без Меркла (см. SignatureService.encodeAndSign),
+ * а её же проход заполняет record_bytes и чистит старые '?'.
+ */
+@Service
+public class ResignJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResignJobService.class);
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private static final int SEED_SAMPLE = 100;
+
+    /** Оптимистическая проверка версии: параллельно изменённую запись не трогаем — update её уже переподписал */
+    private static final String SIGN_SQL =
+            "update signatures set av_record_signature = ?, record_bytes = ? where id = ? and version = ?";
+    /** Изменился образ записи (старые '?', расхождение record_bytes с полями) — это правка содержимого */
+    private static final String UPDATE_SQL =
+            "update signatures set av_record_signature = ?, record_bytes = ?, object_signature = ?, " +
+            "version = version + 1, updated_at = ? where id = ? and version = ?";
+
+    private final ResignJobRepository jobs;
+    private final SignatureRepository signatures;
+    private final ManifestSigningService signing;
+    private final ParallelCrypto crypto;
+    private final JdbcTemplate jdbc;
+    private final TaskExecutor jobExecutor;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readTx;
+    private final int chunkSize;
+
+    public ResignJobService(ResignJobRepository jobs,
+                            SignatureRepository signatures,
+                            ManifestSigningService signing,
+                            ParallelCrypto crypto,
+                            JdbcTemplate jdbc,
+                            @Qualifier("jobExecutor") TaskExecutor jobExecutor,
+                            ApplicationEventPublisher events,
+                            PlatformTransactionManager txManager,
+                            @Value("${av.resign.chunk-size:1000}") int chunkSize) {
+        this.jobs = jobs;
+        this.signatures = signatures;
+        this.signing = signing;
+        this.crypto = crypto;
+        this.jdbc = jdbc;
+        this.jobExecutor = jobExecutor;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.chunkSize = chunkSize;
+    }
+
+    /** Запустить переподпись; если задача уже идёт — вернуть её */
+    public synchronized ResignJob start(String by) {
+        List<ResignJob> running = jobs.findAllByStatus(ResignJob.Status.RUNNING);
+        if (!running.isEmpty()) return running.get(0);
+
+        ResignJob job = new ResignJob();
+        job.setStartedBy(by);
+        job.setSigningKey(signing.getSigningKey());
+        job.setTotal(signatures.count());
+        ResignJob saved = jobs.save(job);
+        jobExecutor.execute(() -> run(saved.getId()));
+        return saved;
+    }
+
+    public Optional<ResignJob> get(long id) {
+        return jobs.findById(id);
+    }
+
+    public Optional<ResignJob> latest() {
+        return jobs.findFirstByOrderByIdDesc();
+    }
+
+    /** Таблица переподписана текущими алгоритмом и ключом: последняя задача завершена и запущена под ними */
+    public boolean isCurrent() {
+        return latest().map(j -> j.getStatus() == ResignJob.Status.DONE
+                && signing.getSigningKey().equals(j.getSigningKey())).orElse(false);
+    }
+
+    /** Запустить переподпись, если алгоритм или ключ сменились с последней; null — таблица уже подписана ими */
+    public synchronized ResignJob ensureCurrent(String by) {
+        if (isCurrent()) return null;
+        if (!jobs.existsByStatus(ResignJob.Status.RUNNING) && !jobs.existsBySigningKey(signing.getSigningKey())
+                && sampleVerifies()) {
+            seed(by);
+            return null;
+        }
+        return start(by);
+    }
+
+    /** Первые SEED_SAMPLE записей подписаны текущим ключом и их образ совпадает с полями */
+    private boolean sampleVerifies() {
+        List<Signature> sample = readTx.execute(st ->
+                signatures.findByIdGreaterThanOrderByIdAsc(MIN_ID, Limit.of(SEED_SAMPLE)));
+        for (Signature s : sample) {
+            if (s.getAvRecordSignature() == null || !SignatureBytes.recordMatchesFields(s)
+                    || !signing.verify(SignatureBytes.recordBytes(s), s.getAvRecordSignature())) return false;
+        }
+        return true;
+    }
+
+    private void seed(String by) {
+        ResignJob job = new ResignJob();
+        job.setStartedBy(by);
+        job.setSigningKey(signing.getSigningKey());
+        job.setStatus(ResignJob.Status.DONE);
+        job.setFinishedAt(OffsetDateTime.now());
+        jobs.save(job);
+        log.info("Stored signatures already verify with {}, resign is not needed", signing.getSigningKey());
+    }
+
+    /** keystore перечитывается на лету — смену ключа замечаем периодически */
+    @Scheduled(fixedDelayString = "${av.resign.key-check-ms:60000}", initialDelayString = "${av.resign.key-check-ms:60000}")
+    public void checkSigningKey() {
+        if (jobs.existsByStatus(ResignJob.Status.RUNNING)) return;
+        ResignJob job = ensureCurrent("signing-key-change");
+        if (job != null) log.info("Signing key changed to {}, resign job {} started", signing.getSigningKey(), job.getId());
+    }
+
+    /** Продолжить задачи, прерванные рестартом, с последней закоммиченной порции; ключ сменился — начать новую */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        List<ResignJob> running = jobs.findAllByStatus(ResignJob.Status.RUNNING);
+        for (ResignJob job : running) {
+            log.info("Resuming resign job {} after {}", job.getId(), job.getLastId());
+            jobExecutor.execute(() -> run(job.getId()));
+        }
+        if (running.isEmpty()) checkSigningKey();
+    }
+
+    private void run(long jobId) {
+        long resigned = 0;
+        try {
+            while (true) {
+                ResignJob job = jobs.findById(jobId).orElseThrow();
+                if (job.getStatus() != ResignJob.Status.RUNNING) return;
+
+                UUID after = job.getLastId() == null ? MIN_ID : job.getLastId();
+                List<Signature> page = readTx.execute(st ->
+                        signatures.findByIdGreaterThanOrderByIdAsc(after, Limit.of(chunkSize)));
+                if (page.isEmpty()) {
+                    finish(jobId, ResignJob.Status.DONE, null);
+                    break;
+                }
+
+                // образ записи пересчитываем из полей: заодно заполняется record_bytes у старых строк,
+                // а из старых строк убираются '?', которые кодировщик до масок выбрасывал
+                boolean[] legacy = new boolean[page.size()];
+                for (int i = 0; i < page.size(); i++) legacy[i] = SignatureBytes.stripLegacyWildcards(page.get(i));
+                List<byte[]> records = crypto.map(page, SignatureBytes::buildRecordBytes);
+                List<byte[]> signed = crypto.map(records, signing::sign);
+                resigned += commitChunk(jobId, page, legacy, records, signed);
+            }
+        } catch (Exception e) {
+            log.error("Resign job {} failed", jobId, e);
+            finish(jobId, ResignJob.Status.FAILED, e.toString());
+        }
+        if (resigned > 0) events.publishEvent(new SignaturesChangedEvent(null));
+    }
+
+    /** Записать изменившиеся подписи и сдвинуть курсор задачи — атомарно */
+    private int commitChunk(long jobId, List<Signature> page, boolean[] legacy, List<byte[]> records,
+                            List<byte[]> signed) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Object[]> content = new ArrayList<>();
+        List<Object[]> signatureOnly = new ArrayList<>();
+        for (int i = 0; i < page.size(); i++) {
+            Signature s = page.get(i);
+            // та же подпись (тот же ключ) — как и JPA dirty checking, строку не трогаем
+            if (!legacy[i] && Arrays.equals(s.getAvRecordSignature(), signed.get(i))
+                    && Arrays.equals(s.getRecordBytes(), records.get(i))) continue;
+            long version = s.getVersion() == null ? 0L : s.getVersion();
+            // record_bytes == null — образ и раньше кодировался из полей, клиенты получали те же байты
+            if (legacy[i] || (s.getRecordBytes() != null && !Arrays.equals(s.getRecordBytes(), records.get(i)))) {
+                content.add(new Object[]{signed.get(i), records.get(i), s.getObjectSignature(), now, s.getId(), version});
+            } else {
+                signatureOnly.add(new Object[]{signed.get(i), records.get(i), s.getId(), version});
+            }
+        }
+        int changed = content.size() + signatureOnly.size();
+        UUID last = page.get(page.size() - 1).getId();
+
+        Integer updated = tx.execute(st -> {
+            int n = 0;
+            if (!content.isEmpty()) {
+                for (int c : jdbc.batchUpdate(UPDATE_SQL, content)) n += c > 0 ? 1 : 0;
+            }
+            if (!signatureOnly.isEmpty()) {
+                for (int c : jdbc.batchUpdate(SIGN_SQL, signatureOnly)) n += c > 0 ? 1 : 0;
+            }
+            ResignJob job = jobs.findById(jobId).orElseThrow();
+            job.setProcessed(job.getProcessed() + page.size());
+            job.setResigned(job.getResigned() + n);
+            job.setSkipped(job.getSkipped() + changed - n);
+            job.setLastId(last);
+            return n;
+        });
+        return updated == null ? 0 : updated;
+    }
+
+    private void finish(long jobId, ResignJob.Status status, String error) {
+        tx.executeWithoutResult(st -> jobs.findById(jobId).ifPresent(j -> {
+            j.setStatus(status);
+            j.setError(error);
+            j.setFinishedAt(OffsetDateTime.now());
+        }));
+    }
+}
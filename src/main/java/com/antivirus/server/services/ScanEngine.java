@@ -0,0 +1,352 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Неизменяемый матчер, собранный из активных сигнатур.
+ * Образец — байты objectSignature (не длиннее objectSignatureLength), "??" — любой байт (маска).
+ * Ключ PrefixIndex — первые 8 байт самого длинного точного участка образца (якорь), так что на каждую позицию
+ * входа приходится один поиск в индексе и проверка только кандидатов: образец сверяется с позиции
+ * «якорь минус его смещение» за один проход, байты под маской пропускаются — без возвратов.
+ * Образцы, у которых нет точного участка из 8 байт, проверяются перебором. Совпадение засчитывается, если начало образца лежит
+ * в окне [offsetBegin, offsetEnd]; offsetEnd == 0 или null — до конца данных.
+ * Сигнатуры типа PE проверяются по всем байтам входа, включая overlay (SFX, дропперы) и не-PE данные —
+ * как и до разбора заголовков; только сигнатуры с imageOnly применяются лишь к PE-файлам и лишь в пределах
+ * образа (PeHeader.getImageEnd). JAVA — только на байтах class-файлов (JarScanner).
+ * Изменения отдельных сигнатур применяются через apply() — без повторной компиляции всего набора.
+ */
+public final class ScanEngine {
+
+    /** entry — путь внутри архива (a.jar!/b/C.class), null для самого файла */
+    public record Match(UUID id, String name, long offset, String entry) {
+        public Match(UUID id, String name, long offset) {
+            this(id, name, offset, null);
+        }
+
+        public Match inEntry(String path) {
+            return new Match(id, name, offset, path);
+        }
+    }
+
+    private final long generation;
+    /** Номер релиза, из которого собран набор; 0 — пустой набор до первой публикации */
+    private final long release;
+
+    /** Слоты образцов; patterns[slot] == null — слот освобождён */
+    private final UUID[] ids;
+    private final String[] names;
+    private final byte[][] patterns;
+    /** masks[slot] — null, если все байты точные; иначе 0 на месте "??" */
+    private final byte[][] masks;
+    /** Смещение ключа индекса внутри образца, -1 — образец в shortPatterns */
+    private final int[] anchors;
+    private final long[] begin;
+    private final long[] end;
+    private final Signature.ObjectType[] types;
+    /** Совпадение засчитывается только внутри образа PE-файла */
+    private final boolean[] imageOnly;
+    private final int slots;
+    private final int live;
+
+    private final PrefixIndex index;
+    private final int[] shortPatterns;
+    /** Длина самого длинного образца и докуда в данных вообще может найтись совпадение */
+    private final int maxPatternLength;
+    private final long reachPe;
+    private final long reachImage;
+    private final long reachJava;
+    private final int livePe;
+    private final int liveJava;
+
+    private ScanEngine(long generation, long release, UUID[] ids, String[] names, byte[][] patterns,
+                       byte[][] masks, int[] anchors, long[] begin, long[] end, Signature.ObjectType[] types,
+                       boolean[] imageOnly, int slots, int live,
+                       PrefixIndex index, int[] shortPatterns) {
+        this.generation = generation;
+        this.release = release;
+        this.ids = ids;
+        this.names = names;
+        this.patterns = patterns;
+        this.masks = masks;
+        this.anchors = anchors;
+        this.begin = begin;
+        this.end = end;
+        this.types = types;
+        this.imageOnly = imageOnly;
+        this.slots = slots;
+        this.live = live;
+        this.index = index;
+        this.shortPatterns = shortPatterns;
+        int maxLen = 0, pe = 0, java = 0;
+        long rPe = 0, rImage = 0, rJava = 0;
+        for (int i = 0; i < slots; i++) {
+            if (patterns[i] == null) continue;
+            maxLen = Math.max(maxLen, patterns[i].length);
+            long r = end[i] == Long.MAX_VALUE ? Long.MAX_VALUE : end[i] + patterns[i].length;
+            if (types[i] == Signature.ObjectType.PE) {
+                if (imageOnly[i]) rImage = Math.max(rImage, r);
+                else rPe = Math.max(rPe, r);
+                pe++;
+            } else {
+                rJava = Math.max(rJava, r);
+                java++;
+            }
+        }
+        this.maxPatternLength = maxLen;
+        this.reachPe = rPe;
+        this.reachImage = rImage;
+        this.reachJava = rJava;
+        this.livePe = pe;
+        this.liveJava = java;
+    }
+
+    static ScanEngine compile(long generation, long release, List<Signature> items) {
+        int n = items.size();
+        Builder b = new Builder(new UUID[n], new String[n], new byte[n][], new byte[n][], new int[n], new long[n], new long[n],
+                new Signature.ObjectType[n], new boolean[n], 0, new PrefixIndex(n), new ArrayList<>());
+        for (Signature s : items) b.put(b.slots, s);
+        return b.build(generation, release);
+    }
+
+    static ScanEngine empty() {
+        return compile(0, 0, List.of());
+    }
+
+    /**
+     * Новая сборка с учётом изменённых записей: ACTIVE — добавить/заменить, иначе — убрать.
+     * Копируются только плоские массивы и таблица индекса; образцы остальных записей общие со старой сборкой.
+     */
+    ScanEngine apply(long generation, long release, List<Signature> changed) {
+        Map<UUID, Integer> slotOf = new HashMap<>(slots * 2);
+        for (int i = 0; i < slots; i++) if (patterns[i] != null) slotOf.put(ids[i], i);
+
+        int cap = slots + changed.size();
+        List<Integer> shorts = new ArrayList<>(shortPatterns.length);
+        for (int s : shortPatterns) shorts.add(s);
+        Builder b = new Builder(Arrays.copyOf(ids, cap), Arrays.copyOf(names, cap), Arrays.copyOf(patterns, cap),
+                Arrays.copyOf(masks, cap), Arrays.copyOf(anchors, cap), Arrays.copyOf(begin, cap), Arrays.copyOf(end, cap), Arrays.copyOf(types, cap),
+                Arrays.copyOf(imageOnly, cap), slots, index.copy(), shorts);
+        b.live = live;
+
+        for (Signature s : changed) {
+            Integer slot = slotOf.remove(s.getId());
+            if (slot != null) b.clear(slot);
+            if (s.getStatus() == Signature.Status.ACTIVE) b.put(slot != null ? slot : b.slots, s);
+        }
+        return b.build(generation, release);
+    }
+
+    /** Номер сборки: растёт при каждой пересборке */
+    public long getGeneration() { return generation; }
+
+    public long getRelease() { return release; }
+
+    public int size() { return live; }
+
+    public int getMaxPatternLength() { return maxPatternLength; }
+
+    /**
+     * Байты входа за этой границей ни одна PE-сигнатура не проверяет — их можно не читать.
+     * pe — заголовки входа или null, если вход не PE (тогда остаются только сигнатуры без imageOnly).
+     */
+    public long getReach(PeHeader pe) {
+        return Math.max(reachPe, pe == null ? 0 : Math.min(reachImage, pe.getImageEnd()));
+    }
+
+    /** Освобождённых слотов стало много — пора собрать заново */
+    boolean fragmented() { return slots > 2 * live + 1024; }
+
+    /**
+     * Все сработавшие сигнатуры, каждая один раз — с первым смещением совпадения.
+     * PE-сигнатуры — по всем байтам входа (imageOnly — только внутри образа PE), у class-файла ещё и JAVA.
+     */
+    public List<Match> scan(ByteBuffer data) {
+        List<Match> out = scan(data, 0, PeHeader.parse(data, data.remaining()));
+        if (isClassFile(data)) out.addAll(scanClass(data));
+        return out;
+    }
+
+    /**
+     * PE-сигнатуры по фрагменту файла: data начинается со смещения offset,
+     * окна сигнатур и смещения в результате — абсолютные; pe разобран по началу файла (null — не PE).
+     */
+    public List<Match> scan(ByteBuffer data, long offset, PeHeader pe) {
+        if (livePe == 0) return new ArrayList<>();
+        return scan(data, offset, Signature.ObjectType.PE, getReach(pe), pe == null ? -1 : pe.getImageEnd());
+    }
+
+    /** JAVA-сигнатуры по байтам одного class-файла (смещения — от начала класса) */
+    public List<Match> scanClass(ByteBuffer classBytes) {
+        if (liveJava == 0) return new ArrayList<>();
+        return scan(classBytes, 0, Signature.ObjectType.JAVA, reachJava, -1);
+    }
+
+    public boolean hasJavaSignatures() { return liveJava > 0; }
+
+    public static boolean isClassFile(ByteBuffer b) {
+        return b.remaining() >= 4 && b.duplicate().order(ByteOrder.BIG_ENDIAN).getInt(b.position()) == 0xCAFEBABE;
+    }
+
+    /** imageEnd — конец образа PE для сигнатур с imageOnly, -1 — вход не PE и они не применяются */
+    private List<Match> scan(ByteBuffer data, long offset, Signature.ObjectType type, long limit, long imageEnd) {
+        ByteBuffer buf = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int base = buf.position();
+        if (limit - offset < buf.remaining()) buf.limit(base + (int) Math.max(0, limit - offset));
+        int len = buf.remaining();
+        BitSet found = new BitSet(slots);
+        List<Match> out = new ArrayList<>();
+
+        index.forEachHit(buf, (pos, candidates) -> {
+            for (int slot : candidates) {
+                int start = pos - anchors[slot];
+                if (start >= 0 && !found.get(slot) && types[slot] == type
+                        && matchesAt(buf, base, len, start, offset, slot, imageEnd)) {
+                    found.set(slot);
+                    out.add(new Match(ids[slot], names[slot], offset + start));
+                }
+            }
+        });
+        for (int slot : shortPatterns) {
+            if (types[slot] != type) continue;
+            long first = Math.max(0, begin[slot] - offset);
+            long last = Math.min(end[slot] - offset, (long) len - patterns[slot].length);
+            for (long pos = first; pos <= last; pos++) {
+                if (matchesAt(buf, base, len, (int) pos, offset, slot, imageEnd)) {
+                    out.add(new Match(ids[slot], names[slot], offset + pos));
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    private boolean matchesAt(ByteBuffer buf, int base, int len, int pos, long offset, int slot, long imageEnd) {
+        byte[] p = patterns[slot];
+        long at = offset + pos;
+        if (at < begin[slot] || at > end[slot] || pos + p.length > len) return false;
+        if (imageOnly[slot] && at + p.length > imageEnd) return false;
+        byte[] m = masks[slot];
+        for (int i = 0; i < p.length; i++) {
+            if (buf.get(base + pos + i) != p[i] && (m == null || m[i] != 0)) return false;
+        }
+        return true;
+    }
+
+    private static int limit(Signature s, int length) {
+        Integer len = s.getObjectSignatureLength();
+        return len != null && len > 0 && len < length ? len : length;
+    }
+
+    /** Маска, обрезанная по образцу; null — все байты точные */
+    private static byte[] mask(Signature s) {
+        byte[] m = RecordEncoder.signatureMask(s);
+        if (m == null) return null;
+        m = Arrays.copyOf(m, limit(s, m.length));
+        for (byte b : m) if (b == 0) return m;
+        return null;
+    }
+
+    /** Начало самого длинного участка точных байт; длина участка — в run[0] */
+    private static int longestRun(byte[] mask, int length, int[] run) {
+        if (mask == null) {
+            run[0] = length;
+            return 0;
+        }
+        int best = 0, bestLen = 0;
+        for (int i = 0, start = 0; i <= length; i++) {
+            if (i == length || mask[i] == 0) {
+                if (i - start > bestLen) {
+                    best = start;
+                    bestLen = i - start;
+                }
+                start = i + 1;
+            }
+        }
+        run[0] = bestLen;
+        return best;
+    }
+
+    private static long key(byte[] p, int at) {
+        return ByteBuffer.wrap(p).getLong(at);
+    }
+
+    /** Изменяемая заготовка сборки: заполняет слоты и индекс, build() замораживает */
+    private static final class Builder {
+        final UUID[] ids;
+        final String[] names;
+        final byte[][] patterns;
+        final byte[][] masks;
+        final int[] anchors;
+        final long[] begin;
+        final long[] end;
+        final Signature.ObjectType[] types;
+        final boolean[] imageOnly;
+        final PrefixIndex index;
+        final List<Integer> shorts;
+        int slots;
+        int live;
+
+        Builder(UUID[] ids, String[] names, byte[][] patterns, byte[][] masks, int[] anchors, long[] begin, long[] end,
+                Signature.ObjectType[] types, boolean[] imageOnly, int slots, PrefixIndex index,
+                List<Integer> shorts) {
+            this.ids = ids;
+            this.names = names;
+            this.patterns = patterns;
+            this.masks = masks;
+            this.anchors = anchors;
+            this.begin = begin;
+            this.end = end;
+            this.types = types;
+            this.imageOnly = imageOnly;
+            this.slots = slots;
+            this.index = index;
+            this.shorts = shorts;
+        }
+
+        void put(int slot, Signature s) {
+            byte[] p = RecordEncoder.signatureBytes(s);
+            p = Arrays.copyOf(p, limit(s, p.length));
+            byte[] m = mask(s);
+            int[] run = new int[1];
+            int anchor = longestRun(m, p.length, run);
+            if (run[0] == 0) return;
+            ids[slot] = s.getId();
+            names[slot] = s.getName();
+            patterns[slot] = p;
+            masks[slot] = m;
+            anchors[slot] = run[0] >= 8 ? anchor : -1;
+            begin[slot] = s.getOffsetBegin() == null ? 0 : s.getOffsetBegin();
+            end[slot] = s.getOffsetEnd() == null || s.getOffsetEnd() == 0 ? Long.MAX_VALUE : s.getOffsetEnd();
+            types[slot] = s.getObjectType() == null ? Signature.ObjectType.PE : s.getObjectType();
+            imageOnly[slot] = types[slot] == Signature.ObjectType.PE && Boolean.TRUE.equals(s.getImageOnly());
+            if (anchors[slot] >= 0) index.add(key(p, anchors[slot]), slot);
+            else shorts.add(slot);
+            if (slot == slots) slots++;
+            live++;
+        }
+
+        void clear(int slot) {
+            if (anchors[slot] >= 0) index.remove(key(patterns[slot], anchors[slot]), slot);
+            else shorts.remove(Integer.valueOf(slot));
+            patterns[slot] = null;
+            masks[slot] = null;
+            live--;
+        }
+
+        ScanEngine build(long generation, long release) {
+            return new ScanEngine(generation, release, ids, names, patterns, masks, anchors, begin, end, types,
+                    imageOnly, slots, live,
+                    index, shorts.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Release;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.models.Signature.Status;
+import com.antivirus.server.repository.ReleaseEntryJdbcRepository;
+import com.antivirus.server.repository.ReleaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Держит ScanEngine, скомпилированный из опубликованного релиза (release_entries), и пересобирает его в фоне
+ * по ReleasePublishedEvent; подмена — атомарная. /api/scan видит ровно тот набор, что получают клиенты:
+ * правки сигнатур доходят до него только через сборку и публикацию релиза.
+ * Следующий релиз применяется точечно (ScanEngine.apply по разнице release_entries), если состав релиза
+ * текущей сборки ещё хранится, иначе — полная компиляция.
+ */
+@Service
+public class ScanService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScanService.class);
+
+    /** Больше изменений за раз — дешевле собрать заново */
+    private static final int MAX_INCREMENTAL = 10_000;
+    private static final Set<Release.Status> DIFFABLE =
+            EnumSet.of(Release.Status.READY, Release.Status.PUBLISHED, Release.Status.RETIRED);
+
+    private final ReleaseEntryJdbcRepository entries;
+    private final ReleaseRepository releases;
+    private final JarScanner jarScanner;
+    private final TaskExecutor jobExecutor;
+    private final TransactionTemplate readTx;
+
+    private final AtomicReference<ScanEngine> engine = new AtomicReference<>(ScanEngine.empty());
+    /** Релиз, до которого нужно довести сборку; 0 — ещё ни один не опубликован */
+    private final AtomicLong target = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private long generations;
+
+    public ScanService(ReleaseEntryJdbcRepository entries,
+                       ReleaseRepository releases,
+                       JarScanner jarScanner,
+                       @Qualifier("jobExecutor") TaskExecutor jobExecutor,
+                       PlatformTransactionManager txManager) {
+        this.entries = entries;
+        this.releases = releases;
+        this.jarScanner = jarScanner;
+        this.jobExecutor = jobExecutor;
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+    }
+
+    public ScanEngine engine() {
+        return engine.get();
+    }
+
+    /**
+     * Проверка данных целиком в памяти: PE-сигнатуры — по самим байтам (ScanEngine.scan),
+     * у JAR/ZIP ещё и классы внутри (JarScanner).
+     * Счётчики классов и пропусков — только у архивов; Result.incomplete() — вердикт неполный.
+     */
+    public JarScanner.Result scan(ScanEngine engine, byte[] data, boolean firstOnly) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        List<ScanEngine.Match> raw = engine.scan(buf);
+        if (!JarScanner.isZip(buf) || (firstOnly && !raw.isEmpty())) return new JarScanner.Result(raw, 0, 0, 0);
+        JarScanner.Result r = jarScanner.scan(new ByteArrayInputStream(data), engine, firstOnly);
+        List<ScanEngine.Match> all = new ArrayList<>(raw);
+        all.addAll(r.matches());
+        return new JarScanner.Result(all, r.classes(), r.archives(), r.skipped());
+    }
+
+    /** Публикация (в т.ч. откат и синхронизация с другим узлом) — довести сборку до этого релиза */
+    @EventListener
+    public void onReleasePublished(ReleasePublishedEvent event) {
+        target.set(event.number());
+        if (running.compareAndSet(false, true)) jobExecutor.execute(this::updateLoop);
+    }
+
+    /** Пачка публикаций схлопывается: сборка идёт сразу к последнему релизу; параллельно — не больше одной */
+    private void updateLoop() {
+        try {
+            long to;
+            while ((to = target.get()) != engine.get().getRelease()) update(to);
+        } catch (Exception e) {
+            log.error("Scan engine update failed", e);
+        } finally {
+            running.set(false);
+        }
+        if (target.get() != engine.get().getRelease() && running.compareAndSet(false, true)) {
+            jobExecutor.execute(this::updateLoop);
+        }
+    }
+
+    private void update(long to) {
+        long started = System.currentTimeMillis();
+        ScanEngine cur = engine.get();
+        ScanEngine next = cur.getRelease() == 0 ? null : readTx.execute(st -> applyDiff(cur, to));
+        if (next == null) {
+            next = readTx.execute(st -> ScanEngine.compile(nextGeneration(), to, entries.findAll(to)));
+        }
+        engine.set(next);
+        log.info("Scan engine #{} for release {}: {} patterns in {} ms",
+                next.getGeneration(), to, next.size(), System.currentTimeMillis() - started);
+    }
+
+    /** null — разницу не посчитать (состав прежнего релиза уже вычищен) или она слишком велика */
+    private ScanEngine applyDiff(ScanEngine cur, long to) {
+        long from = cur.getRelease();
+        if (releases.findById(from).map(r -> !DIFFABLE.contains(r.getStatus())).orElse(true)) return null;
+        List<Signature> changed = new ArrayList<>(entries.findChanged(from, to));
+        List<UUID> removed = entries.findRemoved(from, to);
+        if (changed.size() + removed.size() > MAX_INCREMENTAL) return null;
+        for (UUID id : removed) {
+            Signature gone = new Signature();
+            gone.setId(id);
+            gone.setStatus(Status.DELETED);
+            changed.add(gone);
+        }
+        ScanEngine next = cur.apply(nextGeneration(), to, changed);
+        return next.fragmented() ? null : next;
+    }
+
+    private synchronized long nextGeneration() {
+        return ++generations;
+    }
+}
@@ -3,93 +3,87 @@ package com.antivirus.server.services;
 import com.antivirus.server.models.Signature;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
+/** Бинарный образ записи для подписи и data.bin; сама кодировка — в RecordEncoder */
 public final class SignatureBytes {
 
     private SignatureBytes() {}
 
 
+    /** Закодировать из полей (при создании/изменении записи) */
     public static byte[] buildRecordBytes(Signature s) {
-        byte[] nameBytes = (s.getName() == null)
-                ? new byte[0]
-                : s.getName().getBytes(StandardCharsets.US_ASCII);
-
-        long prefix = parsePrefix8(s.getObjectSignaturePrefix());
-        byte[] sigBytes = parseSignatureBytes(s.getObjectSignature());
-        int sigLen = (s.getObjectSignatureLength() == null)
-                ? sigBytes.length
-                : s.getObjectSignatureLength();
-
-        long offBegin = (s.getOffsetBegin() == null) ? 0L : s.getOffsetBegin();
-        long offEnd   = (s.getOffsetEnd()   == null) ? 0L : s.getOffsetEnd();
-        byte objType  = (byte) mapType(s.getObjectType());
-
-        ByteBuffer bb = ByteBuffer.allocate(
-                4 + nameBytes.length + 8 + 4 + sigBytes.length + 8 + 8 + 1
-        ).order(ByteOrder.LITTLE_ENDIAN);
-
-        // ObjectName
-        bb.putInt(nameBytes.length);
-        bb.put(nameBytes);
-
-        // ObjectSignaturePrefix / Length / Signature
-        bb.putLong(prefix);
-        bb.putInt(sigLen);
-        bb.put(sigBytes);
-
-        // OffsetBegin / OffsetEnd / ObjectType
-        bb.putLong(offBegin);
-        bb.putLong(offEnd);
-        bb.put(objType);
-
-        return bb.array();
+        return RecordEncoder.encode(s);
     }
 
 
-    public static byte[] buildDataBin(List<Signature> items) {
-        // оценим итоговый размер
-        int total = 0;
-        byte[][] chunks = new byte[items.size()][];
-        for (int i = 0; i < items.size(); i++) {
-            byte[] rec = buildRecordBytes(items.get(i));
-            chunks[i] = rec;
-            total += rec.length;
-        }
-        ByteBuffer out = ByteBuffer.allocate(total);
-        for (byte[] c : chunks) out.put(c);
-        return out.array();
+    /** Сохранённый образ записи; у строк, записанных до появления record_bytes, — кодирование из полей */
+    public static byte[] recordBytes(Signature s) {
+        return s.getRecordBytes() != null ? s.getRecordBytes() : RecordEncoder.encode(s);
     }
 
 
-    private static long parsePrefix8(String hex) {
-        if (hex == null || hex.isBlank()) return 0L;
-        String clean = hex.replaceAll("[^0-9A-Fa-f]", "");
-        if (clean.length() > 16) clean = clean.substring(0, 16); // 8 байт = 16 hex-символов
-        if (clean.isEmpty()) return 0L;
-        return new java.math.BigInteger(clean, 16).longValue();
+    /**
+     * Запись с маской ("??"): её понимают только клиенты data.bin v2, в manifest.txt и data.bin v1 её нет.
+     * Строка с '?', чей сохранённый образ без маски, — старая запись (до масок '?' выбрасывался при кодировании):
+     * клиенты знают её как точную сигнатуру, см. stripLegacyWildcards.
+     */
+    public static boolean isMasked(Signature s) {
+        String sig = s.getObjectSignature();
+        if (sig == null || sig.indexOf('?') < 0) return false;
+        return s.getRecordBytes() == null || Arrays.equals(s.getRecordBytes(), RecordEncoder.encode(s));
     }
 
 
-    private static byte[] parseSignatureBytes(String hex) {
-        if (hex == null || hex.isBlank()) return new byte[0];
-        String clean = hex.replaceAll("[^0-9A-Fa-f]", "");
-        int len = clean.length() / 2;
-        byte[] out = new byte[len];
-        for (int i = 0; i < len; i++) {
-            out[i] = (byte) Integer.parseInt(clean.substring(i * 2, i * 2 + 2), 16);
+    /**
+     * Старая строка с '?' (record_bytes нет или они без маски): убрать '?' из objectSignature, как это делал
+     * кодировщик до масок, — тогда образ из полей совпадает с тем, что уже есть у клиентов. true — строка изменена.
+     * Все текущие пути записи сохраняют record_bytes, поэтому строка с '?' без них — старая.
+     */
+    public static boolean stripLegacyWildcards(Signature s) {
+        String sig = s.getObjectSignature();
+        if (sig == null || sig.indexOf('?') < 0) return false;
+        if (s.getRecordBytes() != null && Arrays.equals(s.getRecordBytes(), RecordEncoder.encode(s))) return false;
+        s.setObjectSignature(sig.replace("?", ""));
+        return true;
+    }
+
+
+    /**
+     * Сохранённый образ совпадает с кодированием полей строки (у старой строки с '?' — полей без '?', как у клиентов).
+     * Иначе подпись, даже верная, относится не к тому, что лежит в полях.
+     */
+    public static boolean recordMatchesFields(Signature s) {
+        if (s.getRecordBytes() == null || Arrays.equals(s.getRecordBytes(), RecordEncoder.encode(s))) return true;
+        Signature legacy = s.copy();
+        return stripLegacyWildcards(legacy) && Arrays.equals(s.getRecordBytes(), RecordEncoder.encode(legacy));
+    }
+
+
+    /** Границы записей в data.bin: n + 1 смещений, запись i — [bounds[i], bounds[i + 1]) */
+    public static int[] recordBounds(List<Signature> items) {
+        int[] bounds = new int[items.size() + 1];
+        for (int i = 0; i < items.size(); i++) {
+            Signature s = items.get(i);
+            bounds[i + 1] = bounds[i] + (s.getRecordBytes() != null ? s.getRecordBytes().length : RecordEncoder.size(s));
         }
-        return out;
+        return bounds;
     }
 
 
-    private static int mapType(Signature.ObjectType t) {
-        if (t == null) return 0;
-        return switch (t) {
-            case PE -> 0;
-            case JAVA -> 1;
-        };
+    /** data.bin: склейка сохранённых образов, кодируются только записи без них */
+    public static byte[] buildDataBin(List<Signature> items) {
+        long total = 0;
+        for (Signature s : items) {
+            total += s.getRecordBytes() != null ? s.getRecordBytes().length : RecordEncoder.size(s);
+        }
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalStateException("data.bin is too large: " + total);
+        ByteBuffer out = ByteBuffer.allocate((int) total);
+        for (Signature s : items) {
+            if (s.getRecordBytes() != null) out.put(s.getRecordBytes());
+            else RecordEncoder.encode(s, out);
+        }
+        return out.array();
     }
 }
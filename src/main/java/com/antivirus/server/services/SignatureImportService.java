@@ -0,0 +1,123 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.dto.ImportResultDto;
+import com.antivirus.server.models.Signature;
+import com.antivirus.server.repository.SignatureJdbcRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Массовый импорт JSON-массива сигнатур: потоковый разбор, параллельная подпись и upsert пачками.
+ * В памяти держится одна пачка, каждая пачка — отдельная транзакция.
+ */
+@Service
+public class SignatureImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(SignatureImportService.class);
+
+    private final ObjectMapper mapper;
+    private final SignatureJdbcRepository jdbcRepo;
+    private final ManifestSigningService signing;
+    private final ParallelCrypto crypto;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public SignatureImportService(ObjectMapper mapper,
+                                  SignatureJdbcRepository jdbcRepo,
+                                  ManifestSigningService signing,
+                                  ParallelCrypto crypto,
+                                  ApplicationEventPublisher events,
+                                  PlatformTransactionManager txManager,
+                                  @Value("${av.import.batch-size:1000}") int batchSize,
+                                  @Value("${av.import.max-errors:1000}") int maxErrors) {
+        this.mapper = mapper;
+        this.jdbcRepo = jdbcRepo;
+        this.signing = signing;
+        this.crypto = crypto;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Ошибки отдельных записей попадают в результат, разбор продолжается.
+     * Битый JSON — IOException; уже записанные пачки остаются в БД.
+     */
+    public ImportResultDto importJson(InputStream in) throws IOException {
+        ImportResultDto result = new ImportResultDto();
+        List<Signature> batch = new ArrayList<>(batchSize);
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("JSON array of signatures expected");
+            }
+            long index = 0;
+            JsonToken t;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (t == null) throw new IOException("Unexpected end of JSON");
+                long i = index++;
+                result.total++;
+                if (t != JsonToken.START_OBJECT) {
+                    p.skipChildren();
+                    error(result, i, null, "object expected");
+                    continue;
+                }
+                JsonNode node = mapper.readTree(p);
+                Signature s;
+                try {
+                    s = mapper.treeToValue(node, Signature.class);
+                } catch (JsonProcessingException e) {
+                    error(result, i, node.path("id").asText(null), e.getOriginalMessage());
+                    continue;
+                }
+                String problem = SignatureValidator.validate(s);
+                if (problem != null) {
+                    error(result, i, String.valueOf(s.getId()), problem);
+                    continue;
+                }
+                if (s.getId() == null) s.setId(UUID.randomUUID());
+                batch.add(s);
+                if (batch.size() >= batchSize) flush(batch, result);
+            }
+        }
+        flush(batch, result);
+        if (result.imported > 0) events.publishEvent(new SignaturesChangedEvent(null));
+        log.info("Signature import: total={}, imported={}, failed={}", result.total, result.imported, result.failed);
+        return result;
+    }
+
+    private void flush(List<Signature> batch, ImportResultDto result) {
+        if (batch.isEmpty()) return;
+        List<byte[]> sigs = crypto.map(batch, s -> {
+            s.setRecordBytes(SignatureBytes.buildRecordBytes(s));
+            return signing.sign(s.getRecordBytes());
+        });
+        for (int i = 0; i < batch.size(); i++) batch.get(i).setAvRecordSignature(sigs.get(i));
+        tx.executeWithoutResult(st -> jdbcRepo.upsertAll(batch));
+        result.imported += batch.size();
+        batch.clear();
+    }
+
+    private void error(ImportResultDto result, long index, String id, String message) {
+        result.failed++;
+        if (result.errors.size() < maxErrors) result.errors.add(new ImportResultDto.RecordError(index, id, message));
+    }
+}
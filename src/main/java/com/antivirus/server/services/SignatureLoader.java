@@ -1,36 +1,39 @@
 package com.antivirus.server.services;
 
-import com.antivirus.server.models.Signature;
+import com.antivirus.server.dto.ImportResultDto;
 import com.antivirus.server.repository.SignatureRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import java.io.InputStream;
-import java.util.List;
 
 @Service
 public class SignatureLoader {
+    private static final Logger log = LoggerFactory.getLogger(SignatureLoader.class);
+
     @Autowired
     private SignatureRepository signatureRepository;
 
+    @Autowired
+    private SignatureImportService importService;
+
     @PostConstruct
     public void loadSignatures() {
         try {
             if (signatureRepository.count() > 0) {
-                System.out.println("Signatures already present, skip bootstrap.");
+                log.info("Signatures already present, skip bootstrap");
                 return;
             }
-            InputStream inputStream = new ClassPathResource("signatures.json").getInputStream();
-            ObjectMapper mapper = new ObjectMapper();
-            List<Signature> signatures = mapper.readValue(inputStream, new TypeReference<List<Signature>>() {});
-            signatureRepository.saveAll(signatures);
-            System.out.println("Сигнатуры загружены: " + signatures.size());
+            try (InputStream inputStream = new ClassPathResource("signatures.json").getInputStream()) {
+                ImportResultDto result = importService.importJson(inputStream);
+                log.info("Сигнатуры загружены: {}, ошибок: {}", result.imported, result.failed);
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Cannot load bootstrap signatures", e);
         }
     }
 }
@@ -2,16 +2,22 @@ package com.antivirus.server.services;
 
 import com.antivirus.server.models.Signature;
 import com.antivirus.server.models.Signature.Status;
-import com.antivirus.server.models.SignatureAudit;
 import com.antivirus.server.models.SignatureAudit.ChangeType;
-import com.antivirus.server.repository.SignatureAuditRepository;
+import com.antivirus.server.dto.ImportResultDto;
+import com.antivirus.server.dto.SignaturePageDto;
+import com.antivirus.server.repository.SignatureListJdbcRepository;
+import com.antivirus.server.repository.SignatureListJdbcRepository.Cursor;
+import com.antivirus.server.repository.SignatureListJdbcRepository.Page;
+import com.antivirus.server.repository.SignatureListJdbcRepository.Scope;
 import com.antivirus.server.repository.SignatureRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
@@ -21,18 +27,49 @@ import java.util.UUID;
 public class SignatureService {
 
     private final SignatureRepository repo;
-    private final SignatureAuditRepository auditRepo;
+    private final AuditWriter auditWriter;
     private final ManifestSigningService signing;
     private final ObjectMapper mapper;
+    private final ApplicationEventPublisher events;
+    private final SignatureListJdbcRepository listRepo;
+    private final SignatureImportService importService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     public SignatureService(SignatureRepository repo,
-                            SignatureAuditRepository auditRepo,
+                            AuditWriter auditWriter,
                             ManifestSigningService signing,
-                            ObjectMapper mapper) {
+                            ObjectMapper mapper,
+                            ApplicationEventPublisher events,
+                            SignatureListJdbcRepository listRepo,
+                            SignatureImportService importService,
+                            @Value("${av.api.page-size:100}") int defaultPageSize,
+                            @Value("${av.api.max-page-size:1000}") int maxPageSize) {
         this.repo = repo;
-        this.auditRepo = auditRepo;
+        this.auditWriter = auditWriter;
         this.signing = signing;
         this.mapper = mapper;
+        this.events = events;
+        this.listRepo = listRepo;
+        this.importService = importService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Страница списка: keyset по (updatedAt, id), cursor — из nextCursor предыдущей страницы.
+     * Некорректные limit/cursor/fields — IllegalArgumentException.
+     */
+    @Transactional(readOnly = true)
+    public SignaturePageDto page(Scope scope, OffsetDateTime from, OffsetDateTime to,
+                                 Integer limit, String cursor, List<String> fields) {
+        int size = limit == null ? defaultPageSize : limit;
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        Cursor after = cursor == null || cursor.isBlank() ? null : Cursor.decode(cursor);
+        Page page = listRepo.page(scope, from, to, after, size, fields);
+        return new SignaturePageDto(page.items(), page.next() == null ? null : page.next().encode());
     }
 
     /** Основной список для API/манифеста: только ACTIVE */
@@ -44,13 +81,6 @@ public class SignatureService {
     @Transactional(readOnly = true)
     public List<Signature> getAllActive() { return getAllSignatures(); }
 
-    /** Дата релиза баз */
-    @Transactional(readOnly = true)
-    public OffsetDateTime getReleaseDate() {
-        var d = repo.findLastReleaseDate();
-        return d != null ? d : OffsetDateTime.now();
-    }
-
     @Transactional(readOnly = true)
     public List<Signature> findByUpdatedBetween(OffsetDateTime from, OffsetDateTime to) {
         return repo.findAllByUpdatedAtBetweenAndStatusNot(from, to, Status.DELETED);
@@ -63,9 +93,10 @@ public class SignatureService {
     @Transactional
     public Signature create(Signature s, String changedBy) {
         s.setStatus(Status.ACTIVE);
-        s.setAvRecordSignature(signRecord(s));
+        encodeAndSign(s);
         var saved = repo.save(s);
         audit(saved, null, ChangeType.CREATE, changedBy);
+        events.publishEvent(new SignaturesChangedEvent(saved.getId()));
         return saved;
     }
 
@@ -73,7 +104,7 @@ public class SignatureService {
     @Transactional
     public Signature update(UUID id, Signature patch, String changedBy) {
         return repo.findById(id).map(ex -> {
-            String oldJson = toJson(ex);
+            Signature old = ex.copy();
 
             ex.setName(patch.getName());
             ex.setObjectType(patch.getObjectType());
@@ -82,13 +113,15 @@ public class SignatureService {
             ex.setObjectSignature(patch.getObjectSignature());
             ex.setOffsetBegin(patch.getOffsetBegin());
             ex.setOffsetEnd(patch.getOffsetEnd());
+            ex.setImageOnly(patch.getImageOnly());
             ex.setDescription(patch.getDescription());
             ex.setStatus(Status.ACTIVE);
 
-            ex.setAvRecordSignature(signRecord(ex)); // переподписать
+            encodeAndSign(ex); // переподписать
             var saved = repo.save(ex);
 
-            audit(saved, oldJson, ChangeType.UPDATE, changedBy);
+            audit(saved, old, ChangeType.UPDATE, changedBy);
+            events.publishEvent(new SignaturesChangedEvent(saved.getId()));
             return saved;
         }).orElseThrow(() -> new IllegalArgumentException("Signature not found: " + id));
     }
@@ -97,34 +130,33 @@ public class SignatureService {
     @Transactional
     public void softDelete(UUID id, String changedBy) {
         repo.findById(id).ifPresent(ex -> {
-            String oldJson = toJson(ex);
+            Signature old = ex.copy();
             ex.setStatus(Status.DELETED);
             repo.save(ex);
-            audit(ex, oldJson, ChangeType.DELETE, changedBy);
+            audit(ex, old, ChangeType.DELETE, changedBy);
+            events.publishEvent(new SignaturesChangedEvent(ex.getId()));
         });
     }
 
 
-    @Transactional
-    public void saveVerifyResult(UUID id, boolean ok) {
-        repo.findById(id).ifPresent(ex -> {
-            audit(ex, null, ok ? ChangeType.VERIFY_OK : ChangeType.VERIFY_FAIL, "verifier");
-        });
+    /** Аудит результатов проверки одной порцией (записи уже загружены верификатором) */
+    public void saveVerifyResults(List<Signature> items, List<Boolean> results) {
+        List<AuditEvent> events = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            events.add(AuditEvent.of(items.get(i), null,
+                    results.get(i) ? ChangeType.VERIFY_OK : ChangeType.VERIFY_FAIL, "verifier"));
+        }
+        auditWriter.submitAll(events);
     }
 
 
-    @Transactional
-    public List<Signature> loadFromResourceAndSave(String resourcePath) throws Exception {
+    /** Загрузка JSON из classpath — тем же потоковым импортом, что и /admin/signatures/import */
+    public ImportResultDto loadFromResourceAndSave(String resourcePath) throws Exception {
         var is = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourcePath);
         if (is == null) throw new IllegalArgumentException("Resource not found: " + resourcePath);
-
-        List<Signature> items = mapper.readValue(is, new TypeReference<List<Signature>>() {});
-        for (Signature s : items) {
-            if (s.getId() == null) s.setId(UUID.randomUUID());
-            s.setStatus(Status.ACTIVE);
-            s.setAvRecordSignature(signRecord(s));
+        try (is) {
+            return importService.importJson(is);
         }
-        return repo.saveAll(items);
     }
 
 
@@ -139,43 +171,27 @@ public class SignatureService {
     }
 
 
-    @Transactional
-    public int resignAll() {
-        var all = repo.findAll();
-        for (var s : all) {
-            s.setAvRecordSignature(signRecord(s));
-            repo.save(s);
-        }
-        return all.size();
-    }
-
-
-
-    private byte[] signRecord(Signature s) {
+    /**
+     * Проверить поля, сохранить бинарный образ записи и подписать его.
+     * Подпись записи ставится и при av.release.merkle=true: режим задаётся на релиз, а не на запись, и классический
+     * релиз (GUID:signature в manifest.txt и дельтах) можно собрать, переподписав только записи со старым ключом.
+     * Релизы в режиме Меркла на подписи записей не опираются и переподпись не ждут.
+     */
+    private void encodeAndSign(Signature s) {
+        String problem = SignatureValidator.validate(s);
+        if (problem != null) throw new InvalidSignatureException(problem);
+        byte[] record = SignatureBytes.buildRecordBytes(s);
         try {
-            var pk = signing.loadPrivateKeyForSigning();
-            var sig = java.security.Signature.getInstance("SHA256withRSA");
-            sig.initSign(pk);
-            sig.update(SignatureBytes.buildRecordBytes(s)); // бинарный образ записи
-            return sig.sign();
+            s.setAvRecordSignature(signing.sign(record));
         } catch (Exception e) {
             throw new RuntimeException("Cannot sign record " + s.getId(), e);
         }
+        s.setRecordBytes(record);
     }
 
-    private void audit(Signature s, String oldJson, ChangeType type, String by) {
-        var a = new SignatureAudit();
-        a.setSignatureId(s.getId());
-        a.setChangedBy(by);
-        a.setChangeType(type);
-        a.setOldJson(oldJson);
-        a.setNewJson(toJson(s));
-        auditRepo.save(a);
-    }
-
-    private String toJson(Object o) {
-        try { return mapper.writeValueAsString(o); }
-        catch (Exception e) { return "{}"; }
+    /** Аудит уходит в AuditWriter: JSON и insert — в фоне, после коммита */
+    private void audit(Signature s, Signature old, ChangeType type, String by) {
+        auditWriter.submit(AuditEvent.of(s, old, type, by));
     }
 
 
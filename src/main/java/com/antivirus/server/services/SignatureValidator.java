@@ -0,0 +1,73 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+
+import java.nio.charset.StandardCharsets;
+
+/** Проверка полей записи до подписи: то, что иначе молча испортится при сборке data.bin */
+public final class SignatureValidator {
+
+    private SignatureValidator() {}
+
+    /** null — запись корректна, иначе текст ошибки */
+    public static String validate(Signature s) {
+        if (s.getName() == null || s.getName().isBlank()) return "name is required";
+        if (!StandardCharsets.US_ASCII.newEncoder().canEncode(s.getName())) return "name must be ASCII";
+        if (s.getObjectType() == null) return "objectType is required";
+        if (Boolean.TRUE.equals(s.getImageOnly()) && s.getObjectType() != Signature.ObjectType.PE) {
+            return "imageOnly applies to PE signatures only";
+        }
+
+        String prefix = s.getObjectSignaturePrefix();
+        if (prefix != null && !prefix.isBlank()) {
+            if (prefix.indexOf('?') >= 0) return "objectSignaturePrefix cannot contain ??";
+            int digits = hexDigits(prefix);
+            if (digits < 0) return "objectSignaturePrefix is not hex";
+            if (digits > 16) return "objectSignaturePrefix is longer than 8 bytes";
+        }
+        String sig = s.getObjectSignature();
+        if (sig != null && !sig.isBlank()) {
+            int digits = hexDigits(sig);
+            if (digits < 0) return "objectSignature is not hex";
+            if (digits % 2 != 0) return "objectSignature has odd number of hex digits";
+            String mask = maskError(sig);
+            if (mask != null) return mask;
+        }
+        if (s.getObjectSignatureLength() != null && s.getObjectSignatureLength() < 0) {
+            return "objectSignatureLength must be >= 0";
+        }
+        Long begin = s.getOffsetBegin(), end = s.getOffsetEnd();
+        if ((begin != null && begin < 0) || (end != null && end < 0)) return "offsets must be >= 0";
+        if (begin != null && end != null && begin > end) return "offsetBegin > offsetEnd";
+        return null;
+    }
+
+    /** "??" — только целым байтом и не на месте всех байт сигнатуры */
+    private static String maskError(String s) {
+        int hi = -1, concrete = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+            int d = c == '?' ? 1 : 0;
+            if (hi < 0) {
+                hi = d;
+                continue;
+            }
+            if (hi != d) return "objectSignature wildcard must cover a whole byte (??)";
+            if (d == 0) concrete++;
+            hi = -1;
+        }
+        return concrete == 0 ? "objectSignature has no concrete bytes" : null;
+    }
+
+    /** Количество hex-цифр ("?" — тоже); пробелы допускаются как разделители, любой другой символ — -1 */
+    private static int hexDigits(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((Character.digit(c, 16) >= 0 && c < 128) || c == '?') n++;
+            else if (!Character.isWhitespace(c)) return -1;
+        }
+        return n;
+    }
+}
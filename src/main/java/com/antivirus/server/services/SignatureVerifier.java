@@ -2,47 +2,124 @@ package com.antivirus.server.services;
 
 import com.antivirus.server.models.Signature;
 import com.antivirus.server.repository.SignatureRepository;
+import com.antivirus.server.repository.SignatureVerificationJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Периодическая проверка целостности ЭЦП записей.
+ * Проверяются только ACTIVE-записи, изменившиеся с последней успешной проверки (version / ключ),
+ * порциями по id и параллельно на cryptoExecutor. Планировщик лишь ставит проход в jobExecutor,
+ * поэтому другие @Scheduled-задачи не ждут его окончания.
+ * Пока записи не переподписаны после смены алгоритма или ключа, проход не запускается: старые подписи
+ * не сошлись бы с новым ключом и дали бы ложные VERIFY_FAIL.
+ * Режим Меркла проверку не отменяет: корень дерева считается по строкам БД, и подменённая в обход API запись
+ * попала бы в подписанный корень — проверка ЭЦП её ловит. Проход инкрементальный, проверяются только правки.
+ * Сначала record_bytes сверяются с кодированием полей строки (RecordEncoder): правка полей в обход API
+ * при нетронутых record_bytes и подписи — тоже VERIFY_FAIL.
+ */
 @Service
 public class SignatureVerifier {
 
+    private static final Logger log = LoggerFactory.getLogger(SignatureVerifier.class);
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
     private final SignatureRepository repo;
+    private final SignatureVerificationJdbcRepository verifications;
     private final ManifestSigningService manifestSigningService;
     private final SignatureService signatureService;
+    private final ResignJobService resign;
+    private final ParallelCrypto crypto;
+    private final TaskExecutor jobExecutor;
+    private final TransactionTemplate readTx;
+    private final int pageSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
 
     public SignatureVerifier(SignatureRepository repo,
+                             SignatureVerificationJdbcRepository verifications,
                              ManifestSigningService manifestSigningService,
-                             SignatureService signatureService) {
+                             SignatureService signatureService,
+                             ResignJobService resign,
+                             ParallelCrypto crypto,
+                             @Qualifier("jobExecutor") TaskExecutor jobExecutor,
+                             PlatformTransactionManager txManager,
+                             @Value("${av.verify.page-size:1000}") int pageSize) {
         this.repo = repo;
+        this.verifications = verifications;
         this.manifestSigningService = manifestSigningService;
         this.signatureService = signatureService;
+        this.resign = resign;
+        this.crypto = crypto;
+        this.jobExecutor = jobExecutor;
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.pageSize = pageSize;
     }
 
-    /** каждые 5 минут */
+    /** каждые 5 минут; если прошлый проход ещё идёт — пропускаем */
     @Scheduled(cron = "0 */5 * * * *")
     public void verifyAll() {
-        var cert = manifestSigningService.getServerCertificate();
-        PublicKey publicKey = cert.getPublicKey();
-
-        for (Signature s : repo.findAll()) {
+        if (!running.compareAndSet(false, true)) return;
+        jobExecutor.execute(() -> {
             try {
-                var recordBytes = SignatureBytes.buildRecordBytes(s);
-                var signature   = s.getAvRecordSignature();
-                if (signature == null || signature.length == 0) continue;
+                runPass();
+            } catch (Exception e) {
+                log.error("Signature verification pass failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
 
-                var verifier = java.security.Signature.getInstance("SHA256withRSA");
-                verifier.initVerify(publicKey);
-                verifier.update(recordBytes);
-                boolean ok = verifier.verify(signature);
+    private void runPass() {
+        if (!resign.isCurrent()) {
+            log.info("Signature verification skipped: records are being re-signed with the current key");
+            return;
+        }
+        String keyId = manifestSigningService.getKeyId();
+        UUID after = MIN_ID;
+        long checked = 0, failed = 0;
+        while (true) {
+            UUID from = after;
+            List<Signature> page = readTx.execute(st ->
+                    repo.findUnverifiedAfter(from, keyId, PageRequest.of(0, pageSize)));
+            if (page.isEmpty()) break;
+            after = page.get(page.size() - 1).getId();
 
-                signatureService.saveVerifyResult(s.getId(), ok);
-            } catch (Exception e) {
-                signatureService.saveVerifyResult(s.getId(), false);
+            List<Signature> signed = new ArrayList<>(page.size());
+            for (Signature s : page) {
+                if (s.getAvRecordSignature() != null && s.getAvRecordSignature().length > 0) signed.add(s);
             }
+            List<Boolean> results = crypto.map(signed, this::verify);
+
+            verifications.saveAll(signed, results, keyId);
+            signatureService.saveVerifyResults(signed, results);
+            checked += signed.size();
+            failed += results.stream().filter(ok -> !ok).count();
+        }
+        if (checked > 0) log.info("Verified {} signatures, {} failed", checked, failed);
+    }
+
+    private boolean verify(Signature s) {
+        try {
+            if (!SignatureBytes.recordMatchesFields(s)) return false;
+            return manifestSigningService.verify(SignatureBytes.recordBytes(s), s.getAvRecordSignature());
+        } catch (Exception e) {
+            return false;
         }
     }
 }
@@ -0,0 +1,10 @@
+package com.antivirus.server.services;
+
+import java.util.UUID;
+
+/**
+ * Публикуется SignatureService после любой записи в таблицу сигнатур.
+ * signatureId == null — массовое изменение (загрузка, переподпись).
+ */
+public record SignaturesChangedEvent(UUID signatureId) {
+}
@@ -0,0 +1,104 @@
+package com.antivirus.server.services;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Кэш вердиктов по SHA-256 содержимого: повторно присланный файл не сканируется.
+ * Вердикт действителен только для того опубликованного релиза (ScanEngine.getRelease), из которого собран движок:
+ * при публикации другого релиза (ReleasePublishedEvent) записи прочих релизов удаляются.
+ * Ограничен по количеству (Caffeine, W-TinyLFU). Если задан av.scan.verdict-cache.file,
+ * сохраняется в него при остановке и читается при старте.
+ */
+@Service
+public class VerdictCache {
+
+    private static final Logger log = LoggerFactory.getLogger(VerdictCache.class);
+
+    record Entry(String sha256, long release, List<ScanEngine.Match> matches) {}
+
+    private final Cache<String, Entry> cache;
+    private final ObjectMapper mapper;
+    private final Path file;
+
+    public VerdictCache(ObjectMapper mapper,
+                        @Value("${av.scan.verdict-cache.max-entries:100000}") long maxEntries,
+                        @Value("${av.scan.verdict-cache.file:}") String file) {
+        this.cache = Caffeine.newBuilder().maximumSize(maxEntries).build();
+        this.mapper = mapper;
+        this.file = file.isBlank() ? null : Path.of(file);
+    }
+
+    /** null — вердикта для релиза этого движка нет */
+    public List<ScanEngine.Match> get(String sha256, ScanEngine engine) {
+        Entry e = cache.getIfPresent(sha256);
+        if (e == null) return null;
+        if (e.release() != engine.getRelease()) {
+            cache.asMap().remove(sha256, e);
+            return null;
+        }
+        return e.matches();
+    }
+
+    /** Пустой движок до первой публикации не кэшируется: его набор не привязан к релизу */
+    public void put(String sha256, ScanEngine engine, List<ScanEngine.Match> matches) {
+        if (engine.getRelease() == 0) return;
+        cache.put(sha256, new Entry(sha256, engine.getRelease(), List.copyOf(matches)));
+    }
+
+    @EventListener
+    public void onReleasePublished(ReleasePublishedEvent event) {
+        cache.asMap().values().removeIf(e -> e.release() != event.number());
+    }
+
+    @PostConstruct
+    public void load() {
+        if (file == null || !Files.exists(file)) return;
+        try (MappingIterator<Entry> it = mapper.readerFor(Entry.class).readValues(file.toFile())) {
+            int n = 0;
+            while (it.hasNext()) {
+                Entry e = it.next();
+                cache.put(e.sha256(), e);
+                n++;
+            }
+            log.info("Loaded {} cached verdicts from {}", n, file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot load verdict cache from {}: {}", file, e.toString());
+        }
+    }
+
+    /** JSON-строка на запись; пишется во временный файл и переименовывается, чтобы не оставить обрывок */
+    @PreDestroy
+    public void save() {
+        if (file == null) return;
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Entry e : cache.asMap().values()) {
+                    w.write(mapper.writeValueAsString(e));
+                    w.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot save verdict cache to {}: {}", file, e.toString());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkIndexTest {
+
+    private static List<Signature> items(int n) {
+        List<Signature> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Signature s = new Signature();
+            s.setId(UUID.randomUUID());
+            s.setName("s" + i);
+            s.setObjectSignature(String.format("%016x", i));
+            list.add(s);
+        }
+        list.sort(Comparator.comparing((Signature s) -> s.getId().getMostSignificantBits(), Long::compareUnsigned)
+                .thenComparing(s -> s.getId().getLeastSignificantBits(), Long::compareUnsigned));
+        return list;
+    }
+
+    @Test
+    void editChangesOnlyItsChunk() {
+        List<Signature> items = items(500);
+        ChunkIndex before = ChunkIndex.build(items, 4);
+        assertEquals(16, before.getChunks().size());
+        assertEquals(500, before.getChunks().stream().mapToInt(ChunkIndex.Chunk::records).sum());
+
+        Signature edited = items.get(123);
+        edited.setOffsetEnd(42L);
+        ChunkIndex after = ChunkIndex.build(items, 4);
+
+        int changed = 0;
+        for (int i = 0; i < 16; i++) {
+            ChunkIndex.Chunk a = before.getChunks().get(i), b = after.getChunks().get(i);
+            assertEquals(a.prefix(), b.prefix());
+            if (!a.sha256().equals(b.sha256())) {
+                changed++;
+                assertEquals(edited.getId().getMostSignificantBits() >>> 60, b.prefix());
+            }
+        }
+        assertEquals(1, changed);
+    }
+
+    @Test
+    void chunksCarryIdsAndRecords() throws Exception {
+        List<Signature> items = items(3);
+        ChunkIndex index = ChunkIndex.build(items, 0);
+        assertEquals(1, index.getChunks().size());
+        ChunkIndex.Chunk c = index.getChunks().get(0);
+        assertNotNull(index.find(c.sha256()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(c, out);
+        assertEquals(c.length(), out.size());
+        ByteBuffer b = ByteBuffer.wrap(out.toByteArray());
+        for (Signature s : items) assertEquals(s.getId(), new UUID(b.getLong(), b.getLong()));
+        for (Signature s : items) {
+            byte[] rec = new byte[RecordEncoder.encode(s).length];
+            b.get(rec);
+            assertArrayEquals(RecordEncoder.encode(s), rec);
+        }
+        assertEquals(0, b.remaining());
+        assertTrue(index.text(7).startsWith("RELEASE:7\nBITS:0\nCHUNKS:1\n0:" + c.sha256() + ":3:"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataBinV2Test {
+
+    private static Signature sig(String name, String prefix, String hex) {
+        Signature s = new Signature();
+        s.setName(name);
+        s.setObjectSignaturePrefix(prefix);
+        s.setObjectSignature(hex);
+        s.setObjectType(Signature.ObjectType.PE);
+        return s;
+    }
+
+    @Test
+    void directoryIsSortedAndPointsAtAlignedRecords() {
+        List<Signature> items = new ArrayList<>(List.of(
+                sig("c", "ffffffffffffffff", "ff00"),
+                sig("a", "0000000000000002", "0102030405"),
+                sig("dup", "0000000000000002", "aa"),
+                sig("b", "8000000000000000", "4d5a????50")));
+        byte[] bin = DataBinV2.build(items);
+        ByteBuffer b = ByteBuffer.wrap(bin).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertArrayEquals(new byte[]{'A', 'V', 'D', '2'}, Arrays.copyOf(bin, 4));
+        assertEquals(DataBinV2.VERSION, b.getInt(4));
+        assertEquals(4, b.getInt(12));
+        long dir = b.getLong(16);
+        long records = b.getLong(32);
+        assertEquals(records + b.getLong(40), bin.length);
+
+        long[] prefixes = new long[4];
+        int[] ordinals = new int[4];
+        for (int i = 0; i < 4; i++) {
+            int e = (int) dir + i * DataBinV2.ENTRY_SIZE;
+            prefixes[i] = b.getLong(e);
+            long offset = b.getLong(e + 8);
+            int length = b.getInt(e + 16);
+            ordinals[i] = b.getInt(e + 20);
+            assertEquals(0, offset % DataBinV2.ALIGNMENT);
+            assertTrue(offset >= records);
+            assertArrayEquals(RecordEncoder.encode(items.get(ordinals[i])),
+                    Arrays.copyOfRange(bin, (int) offset, (int) offset + length));
+        }
+        assertArrayEquals(new long[]{2, 2, 0x8000000000000000L, -1}, prefixes);
+        assertArrayEquals(new int[]{1, 2, 3, 0}, ordinals);
+    }
+}
@@ -0,0 +1,70 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DirectoryScanServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsPatternsAcrossMappedChunkBoundaries() throws Exception {
+        byte[] data = ScanEngineTest.pe(1000, 1000);
+        byte[] p = {7, 7, 7, 7, 1, 2, 3, 4, 5, 6};
+        System.arraycopy(p, 0, data, 188, p.length); // пересекает границу окна 192
+        Path file = Files.write(dir.resolve("a.bin"), data);
+
+        Signature s = new Signature();
+        s.setName("cross");
+        s.setObjectSignature("07070707010203040506");
+        s.setOffsetEnd(500L);
+        ScanEngine engine = ScanEngine.compile(1, 0, List.of(s));
+
+        DirectoryScanService svc = new DirectoryScanService(null, new JarScanner(3, 1 << 20), new ObjectMapper(), dir.toString(), 64, 1);
+        DirectoryScanService.FileResult r = svc.scanFile(engine, file, false);
+        assertEquals(1, r.matches().size());
+        assertEquals(188, r.matches().get(0).offset());
+        assertEquals(510, r.scannedBytes()); // дальше offsetEnd + длина образца не читаем
+        svc.shutdown();
+    }
+
+    @Test
+    void scansNonPeFilesAndSkipsThemForImageOnlySignatures() throws Exception {
+        byte[] data = new byte[1000];
+        byte[] p = {7, 7, 7, 7, 1, 2, 3, 4, 5, 6};
+        System.arraycopy(p, 0, data, 700, p.length);
+        Path file = Files.write(dir.resolve("payload.bin"), data);
+
+        Signature s = new Signature();
+        s.setName("raw");
+        s.setObjectSignature("07070707010203040506");
+        DirectoryScanService svc = new DirectoryScanService(null, new JarScanner(3, 1 << 20), new ObjectMapper(), dir.toString(), 64, 1);
+        assertEquals(700, svc.scanFile(ScanEngine.compile(1, 0, List.of(s)), file, false).matches().get(0).offset());
+
+        s.setImageOnly(true);
+        DirectoryScanService.FileResult r = svc.scanFile(ScanEngine.compile(2, 0, List.of(s)), file, false);
+        assertEquals(0, r.matches().size());
+        assertEquals(0, r.scannedBytes()); // не PE — файл не отображается
+        svc.shutdown();
+    }
+
+    @Test
+    void rejectsDirectoriesOutsideAllowedRoots() throws Exception {
+        Path allowed = Files.createDirectory(dir.resolve("allowed"));
+        DirectoryScanService svc = new DirectoryScanService(null, new JarScanner(3, 1 << 20), new ObjectMapper(), allowed.toString(), 64, 1);
+        assertEquals(allowed.toRealPath(), svc.resolve(allowed.toString()));
+        assertThrows(IllegalArgumentException.class, () -> svc.resolve(dir.toString()));
+        assertThrows(IllegalArgumentException.class, () -> svc.resolve(allowed + "/.."));
+        svc.shutdown();
+    }
+}
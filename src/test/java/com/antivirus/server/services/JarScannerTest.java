@@ -0,0 +1,90 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JarScannerTest {
+
+    private static final byte[] PATTERN = {7, 7, 1, 1, 2, 2, 3, 3, 9};
+
+    private static byte[] cls(boolean infected) {
+        byte[] c = new byte[200];
+        c[0] = (byte) 0xCA; c[1] = (byte) 0xFE; c[2] = (byte) 0xBA; c[3] = (byte) 0xBE;
+        if (infected) System.arraycopy(PATTERN, 0, c, 100, PATTERN.length);
+        return c;
+    }
+
+    private static byte[] zip(Object... nameAndBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream z = new ZipOutputStream(out)) {
+            for (int i = 0; i < nameAndBytes.length; i += 2) {
+                z.putNextEntry(new ZipEntry((String) nameAndBytes[i]));
+                z.write((byte[]) nameAndBytes[i + 1]);
+                z.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static ScanEngine engine() {
+        Signature s = new Signature();
+        s.setName("java");
+        s.setObjectType(Signature.ObjectType.JAVA);
+        s.setObjectSignature("070701010202030309");
+        return ScanEngine.compile(1, 0, List.of(s));
+    }
+
+    @Test
+    void findsClassesInNestedArchives() throws IOException {
+        byte[] inner = zip("b/Bad.class", cls(true), "b/Ok.class", cls(false));
+        byte[] outer = zip("a/Ok.class", cls(false), "lib/inner.jar", inner, "README", PATTERN, "x/Bad.class", cls(true));
+        assertTrue(JarScanner.isZip(ByteBuffer.wrap(outer)));
+
+        JarScanner.Result r = new JarScanner(3, 1 << 20).scan(new ByteArrayInputStream(outer), engine(), false);
+        assertEquals(4, r.classes());
+        assertEquals(1, r.archives());
+        assertEquals(2, r.matches().size());
+        assertEquals("lib/inner.jar!/b/Bad.class", r.matches().get(0).entry());
+        assertEquals(100, r.matches().get(0).offset());
+        assertEquals("x/Bad.class", r.matches().get(1).entry());
+
+        JarScanner.Result first = new JarScanner(3, 1 << 20).scan(new ByteArrayInputStream(outer), engine(), true);
+        assertEquals(1, first.matches().size());
+    }
+
+    @Test
+    void skipsTooDeepArchivesAndOversizedClasses() throws IOException {
+        byte[] outer = zip("inner.jar", zip("Bad.class", cls(true)), "Big.class", cls(true));
+
+        JarScanner.Result r = new JarScanner(0, 64).scan(new ByteArrayInputStream(outer), engine(), false);
+        assertTrue(r.matches().isEmpty());
+        assertEquals(2, r.skipped());
+        assertTrue(r.incomplete());
+    }
+
+    @Test
+    void classOfExactlyMaxSizeIsScanned() throws IOException {
+        byte[] outer = zip("Bad.class", cls(true));
+
+        JarScanner.Result r = new JarScanner(3, 200).scan(new ByteArrayInputStream(outer), engine(), false);
+        assertEquals(1, r.matches().size());
+        assertEquals(0, r.skipped());
+        assertFalse(r.incomplete());
+
+        JarScanner.Result file = new JarScanner(3, 200).scanClassFile(new ByteArrayInputStream(cls(true)), engine());
+        assertEquals(1, file.matches().size());
+        assertEquals(0, file.skipped());
+    }
+}
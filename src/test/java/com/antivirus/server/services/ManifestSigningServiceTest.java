@@ -0,0 +1,79 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.dto.ManifestHeaderDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.Signature;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ManifestSigningServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"SHA256withRSA", "Ed25519", "SHA256withECDSA"})
+    void signsAndVerifiesRecordsAndHeaders(String algorithm) throws Exception {
+        ManifestSigningService signing = TestKeys.signing(dir, algorithm);
+        byte[] record = "record".getBytes(StandardCharsets.UTF_8);
+
+        byte[] sig = signing.sign(record);
+        assertTrue(signing.verify(record, sig));
+        assertFalse(signing.verify("other".getBytes(StandardCharsets.UTF_8), sig));
+
+        // клиент проверяет открытым ключом сертификата по алгоритму из заголовка
+        OffsetDateTime date = OffsetDateTime.parse("2026-01-01T00:00:00Z");
+        ManifestHeaderDto header = signing.buildSignedHeader(7, date, 3);
+        assertEquals(algorithm, header.signatureAlgorithm);
+        String data = TestKeys.MAGIC + "|" + date.toEpochSecond() + "|3"
+                + (algorithm.equals(ManifestSigningService.DEFAULT_ALGORITHM) ? "" : "|" + algorithm);
+        Signature v = Signature.getInstance(header.signatureAlgorithm);
+        v.initVerify(signing.getServerCertificate().getPublicKey());
+        v.update(data.getBytes(StandardCharsets.UTF_8));
+        assertTrue(v.verify(Base64.getDecoder().decode(header.headerSignature)));
+    }
+
+    @Test
+    void headerOfPreviousKeyIsNotCurrent() throws Exception {
+        ManifestSigningService before = TestKeys.signing(dir, "SHA256withRSA");
+        OffsetDateTime date = OffsetDateTime.parse("2026-01-01T00:00:00Z");
+        ManifestHeaderDto header = before.buildSignedHeader(7, date, 3, "00ff");
+        assertTrue(before.isCurrent(header));
+
+        ManifestHeaderDto restored = before.restoreHeader(7, date, 3, header.headerSignature, header.signatureAlgorithm,
+                "00ff");
+        assertTrue(before.isCurrent(restored));
+
+        ManifestSigningService rotated = TestKeys.forKeyStore(
+                TestKeys.keyStore(dir, "rotated", "-keyalg", "RSA", "-keysize", "2048"), "SHA256withRSA");
+        assertFalse(rotated.isCurrent(restored));
+        ManifestSigningService otherAlgorithm = TestKeys.signing(dir, "Ed25519");
+        assertFalse(otherAlgorithm.isCurrent(restored));
+    }
+
+    @Test
+    void ecdsaRequiresP256() throws Exception {
+        Path p384 = TestKeys.keyStore(dir, "p384", "-keyalg", "EC", "-groupname", "secp384r1");
+        ManifestSigningService signing = TestKeys.forKeyStore(p384, "SHA256withECDSA");
+        assertThrows(RuntimeException.class, signing::getKeyId);
+
+        assertThrows(IllegalArgumentException.class, () -> TestKeys.forKeyStore(p384, "SHA384withECDSA"));
+    }
+
+    @Test
+    void keyTypeMustMatchAlgorithm() throws Exception {
+        Path rsa = TestKeys.keyStore(dir, "rsa", "-keyalg", "RSA", "-keysize", "2048");
+        assertThrows(RuntimeException.class, () -> TestKeys.forKeyStore(rsa, "Ed25519").sign(new byte[1]));
+    }
+}
@@ -0,0 +1,61 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleTreeTest {
+
+    private static List<Signature> items(int n) {
+        List<Signature> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Signature s = new Signature();
+            s.setId(UUID.randomUUID());
+            s.setName("s" + i);
+            s.setObjectSignature(String.format("%016x", i));
+            list.add(s);
+        }
+        // порядок релиза — по id, как в PostgreSQL (беззнаково)
+        list.sort(Comparator.comparing((Signature s) -> s.getId().getMostSignificantBits(), Long::compareUnsigned)
+                .thenComparing(s -> s.getId().getLeastSignificantBits(), Long::compareUnsigned));
+        return list;
+    }
+
+    @Test
+    void everyLeafVerifiesAgainstRoot() {
+        for (int n : new int[]{1, 2, 3, 5, 8, 13, 100}) {
+            List<Signature> items = items(n);
+            MerkleTree tree = MerkleTree.build(items);
+            byte[] root = tree.root();
+            for (int i = 0; i < n; i++) {
+                int index = tree.indexOf(items.get(i).getId());
+                assertEquals(i, index);
+                List<byte[]> path = tree.proof(index);
+                assertTrue(path.size() <= 32 - Integer.numberOfLeadingZeros(n), "n=" + n);
+                assertTrue(MerkleTree.verify(tree.leaf(index), index, n, path, root), "n=" + n + " i=" + i);
+                if (n > 1) assertFalse(MerkleTree.verify(tree.leaf(index), index ^ 1, n, path, root));
+            }
+        }
+    }
+
+    @Test
+    void rootChangesWithAnyRecord() {
+        List<Signature> items = items(7);
+        byte[] before = MerkleTree.build(items).root();
+        assertArrayEquals(before, MerkleTree.build(items).root());
+
+        items.get(4).setOffsetEnd(99L);
+        assertFalse(Arrays.equals(before, MerkleTree.build(items).root()));
+        assertEquals(-1, MerkleTree.build(items).indexOf(UUID.randomUUID()));
+    }
+}
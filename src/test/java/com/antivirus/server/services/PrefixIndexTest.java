@@ -0,0 +1,57 @@
+package com.antivirus.server.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PrefixIndexTest {
+
+    @Test
+    void matchesHashMapUnderRandomAddAndRemove() {
+        Random rnd = new Random(7);
+        PrefixIndex index = new PrefixIndex(4);
+        Map<Long, List<Integer>> reference = new HashMap<>();
+        long[] keys = new long[300];
+        for (int i = 0; i < keys.length; i++) keys[i] = i % 3 == 0 ? i : rnd.nextLong();
+
+        for (int step = 0; step < 20_000; step++) {
+            long key = keys[rnd.nextInt(keys.length)];
+            int slot = rnd.nextInt(8);
+            List<Integer> slots = reference.computeIfAbsent(key, k -> new ArrayList<>());
+            if (rnd.nextBoolean() && !slots.contains(slot)) {
+                index.add(key, slot);
+                slots.add(slot);
+            } else {
+                index.remove(key, slot);
+                slots.remove(Integer.valueOf(slot));
+            }
+            if (slots.isEmpty()) reference.remove(key);
+        }
+
+        assertEquals(reference.size(), index.size());
+        for (long key : keys) {
+            List<Integer> expected = reference.get(key);
+            if (expected == null) assertNull(index.get(key));
+            else assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), index.get(key));
+        }
+    }
+
+    @Test
+    void copyIsIndependent() {
+        PrefixIndex a = new PrefixIndex(1);
+        a.add(42L, 1);
+        PrefixIndex b = a.copy();
+        b.add(42L, 2);
+        b.remove(42L, 1);
+        assertArrayEquals(new int[]{1}, a.get(42L));
+        assertArrayEquals(new int[]{2}, b.get(42L));
+    }
+}
@@ -0,0 +1,144 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordEncoderTest {
+
+    @Test
+    void matchesLegacyFormat() {
+        for (Signature s : samples()) {
+            byte[] expected = legacy(s);
+            assertArrayEquals(expected, RecordEncoder.encode(s), s.getName());
+            assertEquals(expected.length, RecordEncoder.size(s));
+        }
+    }
+
+    @Test
+    void channelWriterMatchesEncodeAll() throws Exception {
+        List<Signature> items = samples();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordEncoder.ChannelWriter w = new RecordEncoder.ChannelWriter(Channels.newChannel(out), ByteBuffer.allocate(48));
+        for (Signature s : items) w.write(s);
+        w.flush();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (Signature s : items) expected.write(legacy(s));
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        assertArrayEquals(expected.toByteArray(), RecordEncoder.encodeAll(items));
+    }
+
+    @Test
+    void maskedSignatureAppendsMaskAfterFlaggedType() {
+        Signature s = sig("m", null, "4D5A????50 ?? 01 02 03 04 05 06 07", null);
+        byte[] rec = RecordEncoder.encode(s);
+        assertEquals(rec.length, RecordEncoder.size(s));
+
+        ByteBuffer b = ByteBuffer.wrap(rec).order(ByteOrder.LITTLE_ENDIAN);
+        b.position(4 + 1 + 8);
+        assertEquals(13, b.getInt());
+        byte[] bytes = new byte[13];
+        b.get(bytes);
+        assertArrayEquals(new byte[]{0x4D, 0x5A, 0, 0, 0x50, 0, 1, 2, 3, 4, 5, 6, 7}, bytes);
+        b.position(b.position() + 16);
+        assertEquals(RecordEncoder.MASKED, b.get() & 0xFF);
+        // биты точных байт: 0,1,4 и 6..12
+        assertEquals((byte) 0b1101_0011, b.get());
+        assertEquals((byte) 0b0001_1111, b.get());
+        assertEquals(0, b.remaining());
+
+        byte[] mask = RecordEncoder.signatureMask(s);
+        assertEquals(0, mask[2]);
+        assertEquals(1, mask[4]);
+    }
+
+    @Test
+    void storedRecordMustMatchFields() {
+        Signature s = sig("EICAR", "deadbeef", "44d88612fea8a8f36de82e1278abb02f", 16);
+        s.setRecordBytes(RecordEncoder.encode(s));
+        assertTrue(SignatureBytes.recordMatchesFields(s));
+
+        s.setObjectSignature("44d88612fea8a8f36de82e1278abb030");
+        assertFalse(SignatureBytes.recordMatchesFields(s));
+    }
+
+    private static List<Signature> samples() {
+        List<Signature> list = new ArrayList<>();
+        list.add(sig(null, null, null, null));
+        list.add(sig("EICAR", "deadbeef", "44d88612fea8a8f36de82e1278abb02f", 16));
+        list.add(sig("spaces", "de ad:BE-EF 00 11 22 33 44 55", "0x4D 5A-90 00\n03", null));
+        list.add(sig("odd", "ffffffffffffffffff", "abc", null));
+        list.add(sig("non-ascii Ж 😀 \uD800 end", "zz", "g1h2", 3));
+        list.add(sig("", "   ", "   ", 0));
+
+        Random rnd = new Random(42);
+        String alphabet = "0123456789abcdefABCDEF xyZ-:Ж";
+        for (int i = 0; i < 200; i++) {
+            list.add(sig("rnd-" + i, random(rnd, alphabet, rnd.nextInt(24)), random(rnd, alphabet, rnd.nextInt(200)),
+                    rnd.nextBoolean() ? null : rnd.nextInt(100)));
+        }
+        return list;
+    }
+
+    private static String random(Random rnd, String alphabet, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+
+    private static Signature sig(String name, String prefix, String hex, Integer len) {
+        Signature s = new Signature();
+        s.setName(name);
+        s.setObjectSignaturePrefix(prefix);
+        s.setObjectSignature(hex);
+        s.setObjectSignatureLength(len);
+        s.setOffsetBegin(len == null ? null : 7L);
+        s.setOffsetEnd(len == null ? null : 1L << 40);
+        s.setObjectType(len != null && len % 2 == 0 ? Signature.ObjectType.JAVA : Signature.ObjectType.PE);
+        return s;
+    }
+
+    /** Прежняя реализация SignatureBytes.buildRecordBytes — эталон формата */
+    private static byte[] legacy(Signature s) {
+        byte[] nameBytes = s.getName() == null ? new byte[0] : s.getName().getBytes(StandardCharsets.US_ASCII);
+        long prefix = 0L;
+        String p = s.getObjectSignaturePrefix();
+        if (p != null && !p.isBlank()) {
+            String clean = p.replaceAll("[^0-9A-Fa-f]", "");
+            if (clean.length() > 16) clean = clean.substring(0, 16);
+            if (!clean.isEmpty()) prefix = new java.math.BigInteger(clean, 16).longValue();
+        }
+        byte[] sigBytes = new byte[0];
+        String h = s.getObjectSignature();
+        if (h != null && !h.isBlank()) {
+            String clean = h.replaceAll("[^0-9A-Fa-f]", "");
+            sigBytes = new byte[clean.length() / 2];
+            for (int i = 0; i < sigBytes.length; i++) {
+                sigBytes[i] = (byte) Integer.parseInt(clean.substring(i * 2, i * 2 + 2), 16);
+            }
+        }
+        int sigLen = s.getObjectSignatureLength() == null ? sigBytes.length : s.getObjectSignatureLength();
+        ByteBuffer bb = ByteBuffer.allocate(4 + nameBytes.length + 8 + 4 + sigBytes.length + 8 + 8 + 1)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(nameBytes.length).put(nameBytes);
+        bb.putLong(prefix).putInt(sigLen).put(sigBytes);
+        bb.putLong(s.getOffsetBegin() == null ? 0L : s.getOffsetBegin());
+        bb.putLong(s.getOffsetEnd() == null ? 0L : s.getOffsetEnd());
+        bb.put((byte) (s.getObjectType() == Signature.ObjectType.JAVA ? 1 : 0));
+        return bb.array();
+    }
+}
@@ -0,0 +1,248 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Сборка снимков без БД: подписи — ключом из временного keystore */
+class ReleaseSnapshotServiceTest {
+
+    private static final OffsetDateTime DATE = OffsetDateTime.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    /** SignatureService нужен только ради guidWithSignatureBase64 */
+    static SignatureService signatureService() {
+        return new SignatureService(null, null, null, null, null, null, null, 100, 1000);
+    }
+
+    /** n записей, отсортированных по id (как в релизе), подписанных signing */
+    static List<Signature> items(int n, ManifestSigningService signing) {
+        Random rnd = new Random(n);
+        HexFormat hex = HexFormat.of();
+        List<Signature> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            byte[] body = new byte[16 + rnd.nextInt(48)];
+            rnd.nextBytes(body);
+            Signature s = new Signature();
+            s.setId(new UUID(i + 1L, rnd.nextLong()));
+            s.setName("Test.Sig." + i);
+            s.setObjectType(i % 3 == 0 ? Signature.ObjectType.JAVA : Signature.ObjectType.PE);
+            s.setObjectSignaturePrefix(hex.formatHex(body, 0, 8));
+            s.setObjectSignature(hex.formatHex(body));
+            s.setObjectSignatureLength(body.length);
+            s.setOffsetBegin(0L);
+            s.setOffsetEnd(4096L);
+            s.setVersion(1L);
+            s.setRecordBytes(RecordEncoder.encode(s));
+            s.setAvRecordSignature(signing.sign(s.getRecordBytes()));
+            out.add(s);
+        }
+        return out;
+    }
+
+    private ReleaseSnapshotService service(ManifestSigningService signing) {
+        return new ReleaseSnapshotService(signatureService(), signing, mapper, false, 4, false);
+    }
+
+    static ReleaseSnapshotService.Stored stored(ReleaseSnapshot s) {
+        return new ReleaseSnapshotService.Stored(s.getHeader().headerSignature, s.getManifestSignature(),
+                s.getHeader().signatureAlgorithm, s.getHeader().merkleRoot, s.getChunkIndexSignature(),
+                s.getManifestV2Signature(), s.getPartitionSignatures());
+    }
+
+    @Test
+    void etagsChangeWithTheServedBytesNotJustTheRecords() throws Exception {
+        ManifestSigningService signing = TestKeys.signing(dir, ManifestSigningService.DEFAULT_ALGORITHM);
+        List<Signature> items = items(20, signing);
+        ReleaseSnapshotService snapshots = service(signing);
+
+        ReleaseSnapshot first = snapshots.build(1, DATE, items, null);
+        ReleaseSnapshot next = snapshots.build(2, DATE, items, null);
+        // те же записи, но другой номер релиза в заголовке
+        assertEquals(first.getContentSha256(), next.getContentSha256());
+        assertNotEquals(first.getManifestEtag(), next.getManifestEtag());
+
+        // смена ключа: записи те же, подписи заголовка и манифеста — другие
+        ManifestSigningService rotated = TestKeys.forKeyStore(
+                TestKeys.keyStore(dir, "rotated", "-keyalg", "RSA", "-keysize", "2048"),
+                ManifestSigningService.DEFAULT_ALGORITHM);
+        ReleaseSnapshot resigned = service(rotated).build(1, DATE, items, null);
+        assertEquals(first.getContentSha256(), resigned.getContentSha256());
+        assertNotEquals(first.getManifestEtag(), resigned.getManifestEtag());
+        assertNotEquals(first.getBundleEtag(), resigned.getBundleEtag());
+        assertNotEquals(first.getBundleV2Etag(), resigned.getBundleV2Etag());
+    }
+
+    @Test
+    void storedSignaturesReproduceTheSameBytes() throws Exception {
+        ManifestSigningService signing = TestKeys.signing(dir, "SHA256withECDSA");
+        List<Signature> items = items(20, signing);
+        ReleaseSnapshotService snapshots = service(signing);
+
+        ReleaseSnapshot built = snapshots.build(7, DATE, items, null);
+        ReleaseSnapshot loaded = snapshots.build(7, DATE, items, stored(built));
+        assertArrayEquals(built.getManifestJson(), loaded.getManifestJson());
+        assertArrayEquals(built.getBundle(), loaded.getBundle());
+        assertArrayEquals(built.getChunkIndex(), loaded.getChunkIndex());
+        assertEquals(built.getManifestEtag(), loaded.getManifestEtag());
+        assertEquals(built.getBundleEtag(), loaded.getBundleEtag());
+
+        // v2 собирается лениво из data.bin v1 внутри бандла — те же байты, что и из записей
+        byte[] v2 = loaded.getBundleV2();
+        byte[] data = DataBinV2.build(items), end = MultipartBundle.end(loaded.getBoundary());
+        assertArrayEquals(data, Arrays.copyOfRange(v2, v2.length - end.length - data.length, v2.length - end.length));
+        assertEquals(built.getBundleV2Etag(), loaded.getBundleV2Etag());
+
+        // ECDSA недетерминирована: без сохранённых подписей байты (и ETag) были бы другими
+        ReleaseSnapshot again = snapshots.build(7, DATE, items, null);
+        assertNotEquals(built.getBundleEtag(), again.getBundleEtag());
+    }
+
+    @Test
+    void releaseOfPreviousKeyServesNoChunkIndex() throws Exception {
+        ManifestSigningService before = TestKeys.signing(dir, "SHA256withECDSA");
+        List<Signature> items = items(20, before);
+        ReleaseSnapshot built = service(before).build(7, DATE, items, null);
+
+        ManifestSigningService rotated = TestKeys.signing(dir, "Ed25519");
+        ReleaseSnapshot loaded = service(rotated).build(7, DATE, items, stored(built));
+        assertEquals("SHA256withECDSA", loaded.getHeader().signatureAlgorithm);
+        assertArrayEquals(built.getBundle(), loaded.getBundle());
+        assertNull(loaded.getChunks());
+        assertNull(loaded.getChunkIndex());
+    }
+
+    @Test
+    void partitionsAreRestoredFromStoredSignatures() throws Exception {
+        ManifestSigningService signing = TestKeys.signing(dir, "SHA256withECDSA");
+        List<Signature> items = items(20, signing);
+        ReleaseSnapshotService snapshots = new ReleaseSnapshotService(signatureService(), signing, mapper, true, 4, true);
+
+        ReleaseSnapshot built = snapshots.build(3, DATE, items, null);
+        ReleaseSnapshot loaded = snapshots.build(3, DATE, items, stored(built));
+        for (Signature.ObjectType type : Signature.ObjectType.values()) {
+            assertArrayEquals(built.partition(type).getBundle(), loaded.partition(type).getBundle());
+            assertEquals(built.partition(type).getManifestEtag(), loaded.partition(type).getManifestEtag());
+            assertEquals(type.name(), loaded.partition(type).getHeader().objectType);
+        }
+
+        // релиз, собранный без разделов, не получает их при подъёме — свежие подписи разошлись бы между узлами
+        ReleaseSnapshot legacy = snapshots.build(3, DATE, items, new ReleaseSnapshotService.Stored(
+                built.getHeader().headerSignature, built.getManifestSignature(), built.getHeader().signatureAlgorithm,
+                built.getHeader().merkleRoot, built.getChunkIndexSignature()));
+        assertNull(legacy.partition(Signature.ObjectType.PE));
+    }
+
+    @Test
+    void maskedRecordsAreServedOnlyInV2() throws Exception {
+        ManifestSigningService signing = TestKeys.signing(dir, "SHA256withECDSA");
+        List<Signature> items = items(20, signing);
+        for (int i : new int[]{3, 11}) {
+            Signature s = items.get(i);
+            s.setObjectSignature(s.getObjectSignature().substring(0, 4) + "??" + s.getObjectSignature().substring(6));
+            s.setRecordBytes(RecordEncoder.encode(s));
+            s.setAvRecordSignature(signing.sign(s.getRecordBytes()));
+        }
+        List<Signature> plain = items.stream().filter(s -> !SignatureBytes.isMasked(s)).toList();
+        assertEquals(18, plain.size());
+        ReleaseSnapshotService snapshots = service(signing);
+
+        ReleaseSnapshot built = snapshots.build(5, DATE, items, null);
+        assertEquals(18, built.getHeader().count);
+        byte[] v1 = built.getBundle(), data = SignatureBytes.buildDataBin(plain), end = MultipartBundle.end(built.getBoundary());
+        assertArrayEquals(data, Arrays.copyOfRange(v1, v1.length - end.length - data.length, v1.length - end.length));
+        assertTrue(new String(v1, StandardCharsets.UTF_8).startsWith(
+                new String(MultipartBundle.manifestPartHeader(built.getBoundary()), StandardCharsets.UTF_8) + "18\n"));
+
+        byte[] v2 = built.getBundleV2(), all = DataBinV2.build(items);
+        assertArrayEquals(all, Arrays.copyOfRange(v2, v2.length - end.length - all.length, v2.length - end.length));
+        assertTrue(new String(v2, StandardCharsets.UTF_8).contains("20\n" + items.get(0).getId() + ":"));
+        assertNotNull(built.getManifestV2Signature());
+
+        // подпись manifest.txt v2 хранится с релизом, как и остальные
+        ReleaseSnapshot loaded = snapshots.build(5, DATE, items, stored(built));
+        assertArrayEquals(v2, loaded.getBundleV2());
+        assertEquals(built.getContentSha256(), loaded.getContentSha256());
+        assertNull(snapshots.build(5, DATE, plain, null).getManifestV2Signature());
+    }
+
+    @Test
+    void merkleProofsOfMaskedRecordsUseTheV2Tree() throws Exception {
+        ManifestSigningService signing = TestKeys.signing(dir, "SHA256withECDSA");
+        List<Signature> items = items(20, signing);
+        Signature masked = items.get(7);
+        masked.setObjectSignature(masked.getObjectSignature().substring(0, 4) + "??" + masked.getObjectSignature().substring(6));
+        masked.setRecordBytes(RecordEncoder.encode(masked));
+        ReleaseSnapshot built = new ReleaseSnapshotService(signatureService(), signing, mapper, true, 4, false)
+                .build(5, DATE, items, null);
+
+        MerkleTree v1 = built.getMerkle(false), v2 = built.getMerkle(true);
+        assertEquals(built.getHeader().merkleRoot, HexFormat.of().formatHex(v1.root()));
+        assertTrue(v1.indexOf(masked.getId()) < 0);
+        assertEquals(20, v2.size());
+        assertTrue(v2.indexOf(masked.getId()) >= 0);
+        // корень v2 — тот, что в manifest.txt бандла v2
+        assertTrue(new String(built.getBundleV2(), StandardCharsets.UTF_8)
+                .contains("MERKLE_ROOT:" + HexFormat.of().formatHex(v2.root()) + "\n"));
+
+        // без записей с маской у v2 то же дерево, что у v1
+        ReleaseSnapshot plain = new ReleaseSnapshotService(signatureService(), signing, mapper, true, 4, false)
+                .build(5, DATE, items.stream().filter(s -> s != masked).toList(), null);
+        assertSame(plain.getMerkle(false), plain.getMerkle(true));
+    }
+
+    @Test
+    void legacyRowsWithStrayWildcardsStayExact() {
+        Signature legacy = new Signature();
+        legacy.setId(UUID.randomUUID());
+        legacy.setName("Legacy");
+        legacy.setObjectSignaturePrefix("4d5a50");
+        legacy.setObjectSignature("4D5A50");
+        legacy.setRecordBytes(RecordEncoder.encode(legacy));   // так кодировал кодировщик до масок: '?' выбрасывался
+        legacy.setObjectSignature("4D5A?50");
+        assertFalse(SignatureBytes.isMasked(legacy));
+        // проверка ЭЦП сверяет образ с полями так же, как их видят клиенты
+        assertTrue(SignatureBytes.recordMatchesFields(legacy));
+
+        assertTrue(SignatureBytes.stripLegacyWildcards(legacy));
+        assertEquals("4D5A50", legacy.getObjectSignature());
+        assertArrayEquals(legacy.getRecordBytes(), RecordEncoder.encode(legacy));
+        assertFalse(SignatureBytes.stripLegacyWildcards(legacy));
+
+        // строка до появления record_bytes
+        legacy.setObjectSignature("4D5A??50");
+        legacy.setRecordBytes(null);
+        assertTrue(SignatureBytes.stripLegacyWildcards(legacy));
+        assertEquals("4D5A50", legacy.getObjectSignature());
+
+        // настоящая маска не трогается
+        legacy.setObjectSignature("4D5A??50");
+        legacy.setRecordBytes(RecordEncoder.encode(legacy));
+        assertTrue(SignatureBytes.isMasked(legacy));
+        assertFalse(SignatureBytes.stripLegacyWildcards(legacy));
+    }
+}
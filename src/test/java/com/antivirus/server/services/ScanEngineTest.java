@@ -0,0 +1,168 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScanEngineTest {
+
+    /** Заголовки занимают [0, 0x80), одна секция — [0x80, imageEnd) */
+    static final int BODY = 0x80;
+
+    /** Минимальный PE: MZ, PE\0\0, COFF без optional header, одна секция */
+    static byte[] pe(int size, int imageEnd) {
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(0, (byte) 'M').put(1, (byte) 'Z').putInt(0x3C, 0x40);
+        b.putInt(0x40, 0x00004550);
+        b.putShort(0x40 + 6, (short) 1);
+        b.putShort(0x40 + 20, (short) 0);
+        int sec = 0x40 + 24;
+        b.put(sec, (byte) '.').put(sec + 1, (byte) 't');
+        b.putInt(sec + 16, imageEnd - BODY);
+        b.putInt(sec + 20, BODY);
+        return b.array();
+    }
+
+    private static Signature sig(String name, String hex, Long begin, Long end) {
+        Signature s = new Signature();
+        s.setName(name);
+        s.setObjectSignature(hex);
+        s.setOffsetBegin(begin);
+        s.setOffsetEnd(end);
+        return s;
+    }
+
+    private static byte[] put(byte[] d, int at, byte... pattern) {
+        System.arraycopy(pattern, 0, d, at, pattern.length);
+        return d;
+    }
+
+    @Test
+    void findsLongAndShortPatternsWithOffsets() {
+        byte[] d = put(pe(512, 512), 300, (byte) 1, (byte) 2, (byte) 3, (byte) 4, (byte) 5, (byte) 6, (byte) 7,
+                (byte) 8, (byte) 9, (byte) 10);
+        put(d, 400, (byte) 0xCA, (byte) 0xFE);
+
+        ScanEngine engine = ScanEngine.compile(1, 0, List.of(
+                sig("long", "0102030405060708090a", null, null),
+                sig("short", "cafe", 350L, 0L)));
+
+        List<ScanEngine.Match> matches = engine.scan(ByteBuffer.wrap(d));
+        assertEquals(2, matches.size());
+        assertEquals(300, matches.get(0).offset());
+        assertEquals("short", matches.get(1).name());
+        assertEquals(400, matches.get(1).offset());
+    }
+
+    @Test
+    void respectsOffsetWindow() {
+        byte[] p = {9, 8, 7, 6, 5, 4, 3, 2, 1};
+        ScanEngine engine = ScanEngine.compile(1, 0, List.of(sig("w", "090807060504030201", 0L, 250L)));
+
+        assertTrue(engine.scan(ByteBuffer.wrap(put(pe(512, 512), 260, p))).isEmpty());
+        assertEquals(1, engine.scan(ByteBuffer.wrap(put(pe(512, 512), 250, p))).size());
+        assertTrue(engine.scan(ByteBuffer.wrap(new byte[8])).isEmpty());
+        assertEquals(1, engine.scan(ByteBuffer.wrap(put(new byte[512], 250, p))).size());
+    }
+
+    @Test
+    void signaturesApplyOnlyToTheirObjectType() {
+        byte[] p = {1, 1, 2, 2, 3, 3, 4, 4, 5};
+        Signature peSig = sig("pe", "010102020303040405", null, null);
+        Signature javaSig = sig("java", "010102020303040405", null, null);
+        javaSig.setObjectType(Signature.ObjectType.JAVA);
+        Signature untyped = sig("untyped", "010102020303040405", null, null);
+        untyped.setObjectType(null);
+
+        // PE-сигнатуры без imageOnly смотрят любые байты, как и раньше; JAVA — только class-файлы
+        byte[] raw = put(new byte[512], 300, p);
+        assertEquals(1, ScanEngine.compile(1, 0, List.of(peSig)).scan(ByteBuffer.wrap(raw)).size());
+        assertEquals(1, ScanEngine.compile(1, 0, List.of(untyped)).scan(ByteBuffer.wrap(raw)).size());
+        ScanEngine mixed = ScanEngine.compile(1, 0, List.of(peSig, javaSig));
+        assertEquals("pe", mixed.scan(ByteBuffer.wrap(raw)).get(0).name());
+        assertEquals(1, mixed.scan(ByteBuffer.wrap(raw)).size());
+        byte[] cls = put(put(new byte[512], 0, (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE), 300, p);
+        assertEquals(2, mixed.scan(ByteBuffer.wrap(cls)).size());
+
+        // overlay за концом последней секции проверяется, если сигнатура не просит imageOnly
+        ScanEngine engine = ScanEngine.compile(1, 0, List.of(peSig));
+        assertEquals(1, engine.scan(ByteBuffer.wrap(put(pe(512, 256), 300, p))).size());
+        PeHeader header = PeHeader.parse(ByteBuffer.wrap(pe(512, 256)), 512);
+        assertNotNull(header);
+        assertEquals(Long.MAX_VALUE, engine.getReach(header));
+        assertNull(PeHeader.parse(ByteBuffer.wrap(raw), raw.length));
+    }
+
+    @Test
+    void imageOnlySignaturesStayInsideThePeImage() {
+        byte[] p = {1, 1, 2, 2, 3, 3, 4, 4, 5};
+        Signature image = sig("image", "010102020303040405", null, null);
+        image.setImageOnly(true);
+        ScanEngine engine = ScanEngine.compile(1, 0, List.of(image));
+
+        assertTrue(engine.scan(ByteBuffer.wrap(put(new byte[512], 300, p))).isEmpty());
+        assertTrue(engine.scan(ByteBuffer.wrap(put(pe(512, 256), 300, p))).isEmpty());
+        assertTrue(engine.scan(ByteBuffer.wrap(put(pe(512, 256), 250, p))).isEmpty()); // выходит за образ
+        assertEquals(1, engine.scan(ByteBuffer.wrap(put(pe(512, 512), 300, p))).size());
+
+        PeHeader header = PeHeader.parse(ByteBuffer.wrap(pe(512, 256)), 512);
+        assertEquals(256, engine.getReach(header));
+        assertEquals(0, engine.getReach(null));
+    }
+
+    @Test
+    void maskedPatternsAnchorOnLongestConcreteRun() {
+        byte[] run = {(byte) 0xBB, 1, 2, 3, 4, 5, 6, 7, 8};
+        byte[] d = pe(512, 512);
+        // точный участок из 9 байт — якорь; начало совпадения на 2 байта раньше, байт под ?? любой
+        put(put(d, 200, (byte) 0xAA, (byte) 0x11), 202, run);
+        put(put(d, 300, (byte) 0xAA, (byte) 0x22), 302, run);
+        put(d, 400, (byte) 0x4D, (byte) 0x5A, (byte) 0x12, (byte) 0x34, (byte) 0x50);
+
+        ScanEngine engine = ScanEngine.compile(1, 0, List.of(
+                sig("any", "AA??BB0102030405060708", null, null),
+                sig("windowed", "AA ?? BB 01 02 03 04 05 06 07 08", 250L, 0L),
+                sig("short", "4D5A????50", 300L, 0L)));
+
+        Map<String, Long> found = new HashMap<>();
+        for (ScanEngine.Match m : engine.scan(ByteBuffer.wrap(d))) found.put(m.name(), m.offset());
+        assertEquals(Map.of("any", 200L, "windowed", 300L, "short", 400L), found);
+
+        // якорь совпадает, но точный байт перед ним — нет
+        d[300] = (byte) 0xAB;
+        d[200] = (byte) 0xAB;
+        assertTrue(engine.scan(ByteBuffer.wrap(d)).stream().allMatch(m -> m.name().equals("short")));
+    }
+
+    @Test
+    void applyReplacesAndRemovesSignatures() {
+        byte[] d = put(pe(256, 256), BODY, (byte) 1, (byte) 1, (byte) 1, (byte) 1, (byte) 1, (byte) 1, (byte) 1,
+                (byte) 1, (byte) 1);
+        put(d, BODY + 20, (byte) 2, (byte) 2, (byte) 2, (byte) 2, (byte) 2, (byte) 2, (byte) 2, (byte) 2, (byte) 2);
+
+        Signature s = sig("s", "010101010101010101", null, null);
+        ScanEngine v1 = ScanEngine.compile(1, 0, List.of(s));
+        assertEquals(1, v1.scan(ByteBuffer.wrap(d)).size());
+
+        Signature changed = sig("s", "020202020202020202", null, null);
+        changed.setId(s.getId());
+        ScanEngine v2 = v1.apply(2, 1, List.of(changed));
+        assertEquals(BODY + 20, v2.scan(ByteBuffer.wrap(d)).get(0).offset());
+        assertEquals(BODY, v1.scan(ByteBuffer.wrap(d)).get(0).offset());
+
+        changed.setStatus(Signature.Status.DELETED);
+        ScanEngine v3 = v2.apply(3, 1, List.of(changed));
+        assertTrue(v3.scan(ByteBuffer.wrap(d)).isEmpty());
+        assertEquals(0, v3.size());
+    }
+}
@@ -0,0 +1,43 @@
+package com.antivirus.server.services;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Временные PKCS12-хранилища для тестов подписи — keytool из текущего JDK */
+final class TestKeys {
+
+    static final String MAGIC = "AVBASES-TEST";
+    static final String PASSWORD = "testpass";
+    static final String ALIAS = "test";
+
+    private TestKeys() {}
+
+    /** keyalg — аргументы keytool, например "-keyalg", "EC", "-groupname", "secp256r1" */
+    static Path keyStore(Path dir, String name, String... keyalg) throws Exception {
+        Path ks = dir.resolve(name + ".p12");
+        String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+        List<String> cmd = new ArrayList<>(List.of(keytool, "-genkeypair", "-alias", ALIAS));
+        cmd.addAll(List.of(keyalg));
+        cmd.addAll(List.of("-dname", "CN=test", "-validity", "1", "-storetype", "PKCS12", "-keystore", ks.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD));
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        p.getInputStream().readAllBytes();
+        if (p.waitFor() != 0) throw new IllegalStateException("keytool failed");
+        return ks;
+    }
+
+    /** Ключ под алгоритм: RSA 2048, Ed25519 или EC P-256 */
+    static ManifestSigningService signing(Path dir, String algorithm) throws Exception {
+        String[] keyalg = switch (algorithm) {
+            case "Ed25519" -> new String[]{"-keyalg", "Ed25519"};
+            case "SHA256withECDSA" -> new String[]{"-keyalg", "EC", "-groupname", "secp256r1"};
+            default -> new String[]{"-keyalg", "RSA", "-keysize", "2048"};
+        };
+        return forKeyStore(keyStore(dir, algorithm, keyalg), algorithm);
+    }
+
+    static ManifestSigningService forKeyStore(Path keyStore, String algorithm) {
+        return new ManifestSigningService(MAGIC, keyStore.toString(), PASSWORD, "PKCS12", ALIAS, algorithm, 5000);
+    }
+}
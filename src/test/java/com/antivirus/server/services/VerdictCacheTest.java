@@ -0,0 +1,52 @@
+package com.antivirus.server.services;
+
+import com.antivirus.server.models.Signature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VerdictCacheTest {
+
+    private static Signature sig(String hex) {
+        Signature s = new Signature();
+        s.setName("s-" + hex);
+        s.setObjectSignature(hex);
+        return s;
+    }
+
+    @Test
+    void verdictIsBoundToRelease() {
+        Signature a = sig("0101010101010101");
+        ScanEngine r1 = ScanEngine.compile(1, 1, List.of(a));
+        ScanEngine sameRelease = ScanEngine.compile(2, 1, List.of(a));
+        ScanEngine r2 = r1.apply(3, 2, List.of());
+
+        VerdictCache cache = new VerdictCache(new ObjectMapper(), 100, "");
+        cache.put("sha", r1, List.of());
+        assertNotNull(cache.get("sha", sameRelease));
+        assertNull(cache.get("sha", r2));
+    }
+
+    @Test
+    void publishDropsVerdictsOfOtherReleases() {
+        ScanEngine r1 = ScanEngine.compile(1, 1, List.of(sig("0101010101010101")));
+        VerdictCache cache = new VerdictCache(new ObjectMapper(), 100, "");
+        cache.put("sha", r1, List.of());
+
+        cache.onReleasePublished(new ReleasePublishedEvent(1));
+        assertNotNull(cache.get("sha", r1));
+        cache.onReleasePublished(new ReleasePublishedEvent(2));
+        assertNull(cache.get("sha", r1));
+    }
+
+    @Test
+    void emptyEngineIsNotCached() {
+        VerdictCache cache = new VerdictCache(new ObjectMapper(), 100, "");
+        cache.put("sha", ScanEngine.empty(), List.of());
+        assertNull(cache.get("sha", ScanEngine.empty()));
+    }
+}